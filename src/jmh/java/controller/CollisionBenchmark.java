@@ -0,0 +1,64 @@
+package controller;
+
+import model.Model;
+import model.PathMode;
+import model.vector.Vec2D;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Player collision checks around the seeded spawn point, both in the open and pushing into walls
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+  private static final int SAMPLES = 64;
+  private static final double MOVE_AMOUNT = 0.05;
+
+  @Param("42")
+  long seed;
+
+  GameEngine engine;
+  Vec2D[] positions;
+  Vec2D[] moves;
+  Vec2D[] targets;
+  int next;
+
+  @Setup
+  public void setup() {
+    var model = new Model(999, PathMode.FLOW_FIELD, 1, seed);
+    engine = new GameEngine(model);
+
+    // positions on a small circle around the spawn, each moving outwards
+    var center = model.getPlayerPos();
+    positions = new Vec2D[SAMPLES];
+    moves = new Vec2D[SAMPLES];
+    targets = new Vec2D[SAMPLES];
+    for (int i = 0; i < SAMPLES; i++) {
+      var dir = new Vec2D(1, 0).rotate(2 * Math.PI * i / SAMPLES);
+      positions[i] = Vec2D.add(center, dir.scale(0.3));
+      moves[i] = dir.scale(MOVE_AMOUNT);
+      targets[i] = Vec2D.add(positions[i], moves[i]);
+    }
+  }
+
+  @Benchmark
+  public boolean isValidPlayerPos() {
+    int i = next++ & (SAMPLES - 1);
+    return engine.isValidPlayerPos(targets[i]);
+  }
+
+  /**
+   * the projection onto the wall run whenever a move is blocked
+   */
+  @Benchmark
+  public Vec2D wallSlide() {
+    int i = next++ & (SAMPLES - 1);
+    return engine.wallSlide(positions[i], moves[i]);
+  }
+}
@@ -0,0 +1,73 @@
+package model;
+
+import model.vector.GridVec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building maps, every invocation draws from the same seed so each one builds the same map
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapGenerationBenchmark {
+  @Param({"100", "500", "999"})
+  int mapSize;
+
+  @Param("42")
+  long seed;
+
+  GridVec playerPos;
+  List<GridVec> blockPositions;
+  Path savedPath;
+  MapFile saved;
+
+  @Setup
+  public void setup() throws IOException {
+    int center = mapSize / 2;
+    playerPos = new GridVec(center, center);
+    blockPositions = List.of(new GridVec(center + 7, center + 3));
+
+    savedPath = Files.createTempFile("benchmark", ".map");
+    new GridMap(mapSize, blockPositions, playerPos, new Random(seed)).save(savedPath);
+    saved = MapFile.open(savedPath);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.delete(savedPath);
+  }
+
+  /**
+   * complete constructor, walls plus entity layer
+   */
+  @Benchmark
+  public GridMap construct() {
+    return new GridMap(mapSize, blockPositions, playerPos, new Random(seed));
+  }
+
+  /**
+   * walls only, the part that replaced generateRandomMap
+   */
+  @Benchmark
+  public long[] generateWalls() {
+    return MapGenerator.generate(mapSize, mapSize, 0.3, new Random(seed), playerPos, blockPositions);
+  }
+
+  /**
+   * same map copied out of a memory mapped save, what a restart on a saved map costs
+   */
+  @Benchmark
+  public GridMap loadSaved() {
+    return new GridMap(saved, blockPositions);
+  }
+}
@@ -0,0 +1,102 @@
+package model;
+
+import model.vector.GridVec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single path queries between two cells roughly {@code distance} apart, on seeded maps
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+  @Param({"100", "500", "999"})
+  int mapSize;
+
+  @Param({"10", "100", "400"})
+  int distance;
+
+  @Param("42")
+  long seed;
+
+  GridMap map;
+  GridVec from;
+  GridVec to;
+  GridVec toNeighbour;
+
+  @Setup
+  public void setup() {
+    int center = mapSize / 2;
+    // clamped so the far end stays inside the outer wall ring
+    int offset = Math.min(distance, center - 3);
+    from = new GridVec(center - offset / 2, center);
+    to = new GridVec(center + (offset + 1) / 2, center);
+    toNeighbour = new GridVec(to.x(), to.y() + 1);
+
+    // from is placed like a block, so the generator guarantees it can reach to
+    map = new GridMap(mapSize, List.of(from), to, new Random(seed));
+    // the sector graph is built on first use, keep that out of the measurement
+    map.findHierarchicalPath(from, to);
+  }
+
+  @Benchmark
+  public GridVec aStar() {
+    return map.findPath(from, to);
+  }
+
+  @Benchmark
+  public GridVec bfs() {
+    return map.findPath(from, to, PathMode.BFS);
+  }
+
+  @Benchmark
+  public GridVec jps() {
+    return map.findPath(from, to, PathMode.JPS);
+  }
+
+  @Benchmark
+  public GridVec hpaStar() {
+    return map.findHierarchicalPath(from, to);
+  }
+
+  /**
+   * a wall toggled next to the path each query, pays for the incremental sector rebuild
+   */
+  @Benchmark
+  public GridVec hpaStarAfterSet(Counter counter) {
+    map.set(toNeighbour, (counter.next() & 1) == 0 ? GridMap.WALL : GridMap.EMPTY);
+    return map.findHierarchicalPath(from, to);
+  }
+
+  /**
+   * target alternates between two cells, so every query pays for a fresh field
+   */
+  @Benchmark
+  public GridVec flowFieldRebuild(Counter counter) {
+    return map.findFlowStep(from, (counter.next() & 1) == 0 ? to : toNeighbour);
+  }
+
+  /**
+   * target never moves, the steady state of a chase where the player stands still
+   */
+  @Benchmark
+  public GridVec flowFieldStep() {
+    return map.findFlowStep(from, to);
+  }
+
+  @State(Scope.Thread)
+  public static class Counter {
+    int value;
+
+    int next() {
+      return value++;
+    }
+  }
+}
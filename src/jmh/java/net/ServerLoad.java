@@ -0,0 +1,149 @@
+package net;
+
+import controller.GameEngine;
+import model.GameState;
+import model.PathMode;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static net.SnapshotFormat.*;
+
+/**
+ * Load test of a {@code GameServer} over loopback. Many clients share one selector thread, each
+ * decoding its snapshots into a {@code RemoteModel} and changing its input at random, and starting
+ * a new game as soon as it is caught.
+ * <br/>
+ * Arguments: clients, seconds, map size, blocks. Prints the share of its thread the server was
+ * busy, its mean tick time over all sessions, and the snapshot traffic per client.
+ */
+public class ServerLoad {
+  private static final long TICK_NANOS = GameEngine.TICK_MS * 1_000_000L;
+  // inputs are held about this many ticks before changing
+  private static final int INPUT_TICKS = 20;
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int mapSize = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+    int blocks = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+    var config = new GameServer.Config(mapSize, blocks, PathMode.FLOW_FIELD, 1);
+    var server = new GameServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), config);
+    var serverThread = new Thread(server, "game-server");
+    serverThread.start();
+
+    var selector = Selector.open();
+    var clients = new ArrayList<Client>();
+    var address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port());
+    for (int i = 0; i < clientCount; i++) {
+      var channel = SocketChannel.open(address);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      channel.configureBlocking(false);
+      var client = new Client(channel, new Random(i));
+      channel.register(selector, SelectionKey.OP_READ, client);
+      clients.add(client);
+    }
+
+    // warm up before measuring
+    runClients(selector, clients, System.nanoTime() + 2_000_000_000L);
+    long ticks = server.ticks();
+    long busy = server.busyNanos();
+    long bytes = server.bytesSent();
+    long snapshots = clients.stream().mapToLong(c -> c.model.snapshots()).sum();
+    long start = System.nanoTime();
+
+    runClients(selector, clients, start + seconds * 1_000_000_000L);
+
+    double wall = System.nanoTime() - start;
+    ticks = server.ticks() - ticks;
+    busy = server.busyNanos() - busy;
+    bytes = server.bytesSent() - bytes;
+    snapshots = clients.stream().mapToLong(c -> c.model.snapshots()).sum() - snapshots;
+    long games = clients.stream().mapToLong(c -> c.model.keyframes()).sum();
+
+    System.out.printf("%d sessions, %d ticks, server busy %.1f%% of its thread%n",
+        server.sessions(), ticks, 100 * busy / wall);
+    System.out.printf("per tick: %.0f us for all sessions, %.2f us per session%n",
+        busy / 1e3 / ticks, busy / 1e3 / ticks / clientCount);
+    System.out.printf("per client: %.0f snapshots/s, %.1f bytes per snapshot, %.0f bytes/s, %d games in total%n",
+        snapshots / (wall / 1e9) / clientCount, (double) bytes / snapshots, bytes / (wall / 1e9) / clientCount, games);
+
+    server.close();
+    serverThread.join();
+    selector.close();
+  }
+
+  private static void runClients(Selector selector, ArrayList<Client> clients, long until) throws IOException {
+    long nextInput = System.nanoTime();
+    while (System.nanoTime() - until < 0) {
+      selector.select(key -> ((Client) key.attachment()).receive(), 1);
+
+      // every client gets a chance to change its input once per tick
+      if (System.nanoTime() - nextInput >= 0) {
+        nextInput += TICK_NANOS;
+        for (var client : clients) {
+          client.send();
+        }
+      }
+    }
+  }
+
+  private static final class Client {
+    private final SocketChannel channel;
+    private final Random rand;
+    private final RemoteModel model = new RemoteModel();
+    private ByteBuffer in = ByteBuffer.allocate(8 * 1024);
+    private final ByteBuffer out = ByteBuffer.allocate(2);
+
+    Client(SocketChannel channel, Random rand) {
+      this.channel = channel;
+      this.rand = rand;
+    }
+
+    void send() {
+      out.clear();
+      if (model.ready() && model.getGameState() == GameState.GAME_OVER) {
+        out.put((byte) NEW_GAME);
+      }
+      if (rand.nextInt(INPUT_TICKS) == 0) {
+        out.put((byte) rand.nextInt(1 << 6));
+      }
+      out.flip();
+      try {
+        channel.write(out);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    void receive() {
+      try {
+        if (channel.read(in) < 0) {
+          throw new IllegalStateException("server closed the connection");
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+
+      in.flip();
+      while (in.remaining() >= LENGTH_BYTES && in.remaining() >= LENGTH_BYTES + in.getInt(in.position())) {
+        int length = in.getInt();
+        model.apply(in.slice(in.position(), length));
+        in.position(in.position() + length);
+      }
+      in.compact();
+      if (!in.hasRemaining()) {
+        in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+      }
+    }
+  }
+}
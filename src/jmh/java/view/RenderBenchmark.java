@@ -0,0 +1,147 @@
+package view;
+
+import model.MapFile;
+import model.Model;
+import model.PathMode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raycasting and full frames rendered to an offscreen image, on a seeded 999x999 map. Maps sparser
+ * than the generated ones are saved to a temporary map file first, those have open squares for rays
+ * to skip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+  @Param({"800x600", "1920x1080", "3840x2160"})
+  String resolution;
+
+  @Param("42")
+  long seed;
+
+  // in cells, 0 for no limit
+  @Param({"0", "16"})
+  double renderDistance;
+
+  // 0.3 is what games are played on
+  @Param({"0.3", "0.02", "0.002"})
+  double wallRate;
+
+  @Param({"true", "false"})
+  boolean textured;
+
+  // blocks are drawn as billboards
+  @Param({"1", "500"})
+  int blocks;
+
+  Model model;
+  View view;
+  // renders on the benchmark thread alone
+  View serialView;
+  // the same, lowering its resolution to fit frames in 8 ms
+  View budgetView;
+  BufferedImage target;
+  Graphics2D graphics;
+  RayCaster rayCaster;
+  int width;
+  int height;
+
+  @Setup
+  public void setup() throws IOException {
+    var size = resolution.split("x");
+    width = Integer.parseInt(size[0]);
+    height = Integer.parseInt(size[1]);
+
+    if (wallRate == 0.3) {
+      model = new Model(999, PathMode.FLOW_FIELD, blocks, seed);
+    } else {
+      var file = Files.createTempFile("sparse", ".map");
+      MapFile.generate(file, 999, seed, wallRate);
+      model = new Model(MapFile.open(file), PathMode.FLOW_FIELD, blocks, seed, System::currentTimeMillis);
+      Files.delete(file);
+    }
+    view = newView();
+    serialView = newView();
+    serialView.setParallelMinWidth(Integer.MAX_VALUE);
+    budgetView = newView();
+    budgetView.setParallelMinWidth(Integer.MAX_VALUE);
+    budgetView.setFrameTimeBudget(8);
+
+    target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    graphics = target.createGraphics();
+
+    rayCaster = new RayCaster();
+    rayCaster.resize(width);
+  }
+
+  private View newView() {
+    var view = new View(model);
+    view.setSize(width, height);
+    view.setTextured(textured);
+    if (renderDistance > 0) {
+      view.setMaxRenderDistance(renderDistance);
+    }
+    return view;
+  }
+
+  @TearDown
+  public void tearDown() {
+    graphics.dispose();
+  }
+
+  /**
+   * one ray per column, the DDA alone
+   */
+  @Benchmark
+  public void castRays(Blackhole bh) {
+    var camera = Camera.of(model.getPlayerPos(), model.getPlayerDir(), model.getViewport());
+    var grid = model.getGrid();
+
+    int steps = 0;
+    for (int i = 0; i < width; i++) {
+      double vpScalar = 2. * i / width - 1;
+      steps += rayCaster.cast(grid, camera.posX(), camera.posY(),
+          camera.dirX() + camera.planeX() * vpScalar, camera.dirY() + camera.planeY() * vpScalar,
+          renderDistance > 0 ? renderDistance : Double.POSITIVE_INFINITY, i);
+    }
+    bh.consume(steps);
+  }
+
+  /**
+   * whole frame, fill, rays, columns and the final blit
+   */
+  @Benchmark
+  public BufferedImage paintWorld() {
+    view.paint(graphics);
+    return target;
+  }
+
+  /**
+   * whole frame on a single core, 60 fps leave 16.7 ms for it
+   */
+  @Benchmark
+  public BufferedImage paintWorldSerial() {
+    serialView.paint(graphics);
+    return target;
+  }
+
+  /**
+   * whole frame on a single core within a budget of 8 ms, settles on the highest resolution that fits
+   */
+  @Benchmark
+  public BufferedImage paintWorldBudget() {
+    budgetView.paint(graphics);
+    return target;
+  }
+}
@@ -1,21 +1,114 @@
-import controller.BlockController;
+import controller.GameEngine;
+import controller.GameLoop;
 import controller.KeyController;
+import controller.TickClock;
+import metrics.Metrics;
+import model.MapFile;
 import model.Model;
+import model.PathMode;
+import net.GameClient;
+import replay.GameSetup;
+import replay.ReplayWriter;
 import view.View;
 
 import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 
 public class Main {
-  public static void main(String[] args) {
-    var model = new Model(999);
+  public static void main(String[] args) throws IOException {
+    Metrics.register();
+
+    var connect = System.getProperty("connect");
+    if (connect != null) {
+      playRemote(connect);
+      return;
+    }
+
+    int blockCount = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+    boolean unbounded = args.length > 1 && args[1].equals("unbounded");
+    // every game of a run follows from the seed and the keys pressed
+    long seed = Long.getLong("seed", System.nanoTime());
+    System.out.println("seed " + seed);
+
+    var setup = new GameSetup(seed, unbounded ? 0 : 999, blockCount, PathMode.FLOW_FIELD);
+    var clock = new TickClock();
+    var mapFile = System.getProperty("map");
+    var replayFile = System.getProperty("replay");
+    if (mapFile != null && replayFile != null) {
+      throw new IllegalArgumentException("games on saved maps can not be recorded");
+    }
+
+    var model = mapFile == null
+        ? setup.newModel(clock)
+        : new Model(MapFile.open(Path.of(mapFile)), PathMode.FLOW_FIELD, blockCount, seed, clock);
+    var engine = new GameEngine(model, clock);
     var view = new View(model);
-    new KeyController(model, view);
-    new BlockController(model, view);
+    var renderDistance = System.getProperty("renderDistance");
+    if (renderDistance != null) {
+      view.setMaxRenderDistance(Double.parseDouble(renderDistance));
+    }
+    view.setTextured(!"false".equals(System.getProperty("textures")));
+    var frameBudget = System.getProperty("frameBudget");
+    if (frameBudget != null) {
+      view.setFrameTimeBudget(Double.parseDouble(frameBudget));
+    }
+    var keys = new KeyController(view);
 
+    var replay = replayFile == null ? null : new ReplayWriter(Path.of(replayFile), model, setup);
+    engine.setTickListener(replay);
+
+    var frame = showFrame(view);
+    var loop = new GameLoop(model, engine, view, keys, frame, targetFps(frame));
+    loop.start();
+
+    if (replay != null) {
+      // finish the replay once the window is closed, the loop must have stopped writing to it first
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          loop.stop();
+          replay.close();
+        } catch (IOException | InterruptedException e) {
+          e.printStackTrace();
+        }
+      }));
+    }
+  }
+
+  /**
+   * play on a {@code GameServer} at given host:port, the server decides how the game plays out
+   */
+  private static void playRemote(String hostAndPort) throws IOException {
+    int colon = hostAndPort.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("expected host:port, got " + hostAndPort);
+    }
+    var address = new InetSocketAddress(hostAndPort.substring(0, colon), Integer.parseInt(hostAndPort.substring(colon + 1)));
+
+    var client = GameClient.connect(address);
+    var view = new View(client.model());
+    view.setTextured(!"false".equals(System.getProperty("textures")));
+    var keys = new KeyController(view);
+    var frame = showFrame(view);
+    client.start(view, keys, frame, targetFps(frame));
+  }
+
+  private static JFrame showFrame(View view) {
     JFrame frame = new JFrame("escape the block");
     frame.setContentPane(view);
     frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     frame.pack();
     frame.setVisible(true);
+    return frame;
+  }
+
+  /**
+   * drawing no faster than the display can show
+   */
+  private static int targetFps(JFrame frame) {
+    int refreshRate = frame.getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+    return refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN ? 0 : refreshRate;
   }
 }
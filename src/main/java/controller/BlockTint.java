@@ -0,0 +1,33 @@
+package controller;
+
+import view.View;
+
+import java.awt.*;
+
+/**
+ * Makes blocks progressively more red as their speed increases, telling the view only when the
+ * colour actually changes.
+ */
+public final class BlockTint {
+  private final View view;
+  private int green = -1;
+
+  public BlockTint(View view) {
+    if (view == null) {
+      throw new NullPointerException();
+    }
+
+    this.view = view;
+  }
+
+  /**
+   * @param speedFraction 0 at the start of a game up to 1 once blocks reach max speed, see {@code GameEngine.blockSpeedFraction}
+   */
+  public void update(double speedFraction) {
+    int green = Math.max(255 - (int) (255 * speedFraction), 0);
+    if (green != this.green) {
+      this.green = green;
+      view.setBlockColor(new Color(255, green, 0));
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package controller;
+
+/**
+ * Collision of the player's bounding circle with the walls, solved analytically on the grid.
+ * <br/>
+ * A circle of radius below 1 overlaps at most 2x2 cells, so {@code fits} tests those against the
+ * closest point of each wall cell. A blocked move slides along the wall it pushes into, the move is
+ * projected onto the wall's tangent in one go: along the face for a flat wall, around the corner for
+ * a corner. Everything runs on primitives, no objects are allocated.
+ * <br/>
+ * Not thread safe, the slide result is kept in fields.
+ */
+final class Collision {
+  private final ControllableModel model;
+  private final double radius;
+  private final double radiusSquared;
+
+  // move found by the last successful slide
+  private double slideX;
+  private double slideY;
+
+  // closest wall point found by the last contact
+  private double contactX;
+  private double contactY;
+
+  /**
+   * @param radius of the player's bounding circle, below 1
+   */
+  Collision(ControllableModel model, double radius) {
+    if (model == null) {
+      throw new NullPointerException();
+    }
+    if (radius <= 0 || radius >= 1) {
+      throw new IllegalArgumentException("radius must be in (0, 1)");
+    }
+
+    this.model = model;
+    this.radius = radius;
+    this.radiusSquared = radius * radius;
+  }
+
+  /**
+   * @return true if the circle centered at {@code x}, {@code y} overlaps no wall
+   */
+  boolean fits(double x, double y) {
+    return !contact(x, y);
+  }
+
+  /**
+   * Slide a blocked move along the wall it runs into. On success the move actually taken is read
+   * with {@code slideX} and {@code slideY}, it is never longer than the move asked for
+   * @return false if no part of the move is free, in an inside corner
+   */
+  boolean slide(double x, double y, double dx, double dy) {
+    double toX = x + dx;
+    double toY = y + dy;
+    if (!contact(toX, toY)) {
+      return accept(dx, dy);
+    }
+
+    // push out along the normal of the deepest contact, unless the center is already inside the wall
+    double nx = toX - contactX;
+    double ny = toY - contactY;
+    double length = Math.sqrt(nx * nx + ny * ny);
+    if (length > 0) {
+      nx /= length;
+      ny /= length;
+      double into = dx * nx + dy * ny;
+      if (into < 0) {
+        double sx = dx - into * nx;
+        double sy = dy - into * ny;
+        if ((sx != 0 || sy != 0) && fits(x + sx, y + sy)) {
+          return accept(sx, sy);
+        }
+      }
+    }
+
+    // another wall is in the way of the tangent, fall back to the axes, the longer component first
+    if (Math.abs(dx) >= Math.abs(dy)) {
+      return dx != 0 && fits(x + dx, y) ? accept(dx, 0) : dy != 0 && fits(x, y + dy) && accept(0, dy);
+    }
+    return dy != 0 && fits(x, y + dy) ? accept(0, dy) : dx != 0 && fits(x + dx, y) && accept(dx, 0);
+  }
+
+  double slideX() {
+    return slideX;
+  }
+
+  double slideY() {
+    return slideY;
+  }
+
+  private boolean accept(double dx, double dy) {
+    slideX = dx;
+    slideY = dy;
+    return true;
+  }
+
+  /**
+   * find the wall cell closest to the center among those the circle overlaps
+   * @return false if there is none, otherwise its closest point is in {@code contactX}, {@code contactY}
+   */
+  private boolean contact(double x, double y) {
+    int x0 = (int) Math.floor(x - radius);
+    int x1 = (int) Math.floor(x + radius);
+    int y0 = (int) Math.floor(y - radius);
+    int y1 = (int) Math.floor(y + radius);
+
+    double best = radiusSquared;
+    boolean found = false;
+    for (int cy = y0; cy <= y1; cy++) {
+      for (int cx = x0; cx <= x1; cx++) {
+        if (!model.isSolid(cx, cy)) {
+          continue;
+        }
+
+        double px = Math.max(cx, Math.min(cx + 1, x));
+        double py = Math.max(cy, Math.min(cy + 1, y));
+        double d = (px - x) * (px - x) + (py - y) * (py - y);
+        if (d < best) {
+          best = d;
+          contactX = px;
+          contactY = py;
+          found = true;
+        }
+      }
+    }
+
+    return found;
+  }
+}
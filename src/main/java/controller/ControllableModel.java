@@ -4,6 +4,8 @@ import model.GameState;
 import model.vector.GridVec;
 import model.vector.Vec2D;
 
+import java.util.List;
+
 public interface ControllableModel {
 
   /**
@@ -21,6 +23,11 @@ public interface ControllableModel {
    */
   Vec2D getPlayerDir();
 
+  /**
+   * @return viewport vector of player, perpendicular to direction
+   */
+  Vec2D getViewport();
+
   /**
    * Rotate player by given angle
    * @param theta angle in radians
@@ -28,9 +35,9 @@ public interface ControllableModel {
   void rotatePlayerDir(double theta);
 
   /**
-   * @return current position of "the block"
+   * @return current positions of all blocks
    */
-  GridVec getBlockPos();
+  List<GridVec> getBlockPositions();
 
   /**
    * @return value stored at given grid position
@@ -38,9 +45,17 @@ public interface ControllableModel {
   int checkGridCell(GridVec pos) throws IndexOutOfBoundsException;
 
   /**
-   * move "the block" to the given position
+   * unboxed wall test for collision, cells off the map count as solid
+   * @return true if the player cannot enter the cell at {@code x}, {@code y}
+   */
+  boolean isSolid(int x, int y);
+
+  /**
+   * move all blocks in one batch, {@code null} means the block stays where it is.
+   * If two blocks want the same cell the one listed first gets it and the other stays.
+   * @param steps one entry per block, in the order of {@code getBlockPositions}
    */
-  void setBlockPos(GridVec pos) throws IndexOutOfBoundsException;
+  void moveBlocks(List<GridVec> steps) throws IndexOutOfBoundsException;
 
   /**
    * get the current game state
@@ -63,7 +78,8 @@ public interface ControllableModel {
   void startNewGame();
 
   /**
-   * Find first step block must take to reach player
+   * Find first step each block must take to reach player
+   * @return one entry per block, {@code null} where no path exists
    */
-  GridVec findBlockPath();
+  List<GridVec> findBlockPaths();
 }
@@ -0,0 +1,22 @@
+package controller;
+
+/**
+ * Player inputs, a set of them held down at once is packed into an int using {@code bit()}
+ */
+public enum Direction {
+  FRONT, BACK, LEFT, RIGHT, ROT_LEFT, ROT_RIGHT;
+
+  /**
+   * @return the bit representing this direction in an input mask
+   */
+  public int bit() {
+    return 1 << ordinal();
+  }
+
+  /**
+   * @return true if this direction is held down in given input mask
+   */
+  public boolean in(int mask) {
+    return (mask & bit()) != 0;
+  }
+}
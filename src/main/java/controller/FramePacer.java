@@ -0,0 +1,53 @@
+package controller;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds a render loop to a target frame rate by sleeping between frames. Not thread safe, use it from
+ * the loop thread only.
+ */
+public final class FramePacer {
+  private final long frameNanos;
+  // when the next frame is due
+  private long nextFrame = System.nanoTime();
+
+  /**
+   * @param targetFps frames drawn per second at most, 0 for as many as possible
+   */
+  public FramePacer(int targetFps) {
+    if (targetFps < 0) {
+      throw new IllegalArgumentException("negative frame rate");
+    }
+
+    frameNanos = targetFps == 0 ? 0 : 1_000_000_000L / targetFps;
+  }
+
+  /**
+   * sleep until the next frame is due, call after every frame drawn
+   */
+  public void waitForNextFrame() {
+    if (frameNanos == 0) {
+      return;
+    }
+
+    long next = nextFrame + frameNanos;
+    long now = System.nanoTime();
+    if (next - now < -frameNanos) {
+      // fell more than a frame behind, don't try to catch up with a burst of frames
+      nextFrame = now;
+      return;
+    }
+    while (next - now > 0) {
+      LockSupport.parkNanos(next - now);
+      now = System.nanoTime();
+    }
+    nextFrame = next;
+  }
+
+  /**
+   * pace the next frame from now, call after a stretch in which no frame was drawn
+   */
+  public void restart() {
+    nextFrame = System.nanoTime();
+  }
+}
@@ -0,0 +1,237 @@
+package controller;
+
+import metrics.Metrics;
+import model.GameState;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+
+/**
+ * All game rules, free of any UI or timer.
+ * <br/>
+ * The Swing controllers call {@code movePlayer} and {@code stepBlocks} from their own timers, while
+ * headless code advances the game with {@code tick}, one fixed time step at a time.
+ */
+public class GameEngine {
+  public static final int TICK_MS = 1000 / 60; // length of one fixed time step
+
+  private static final int MIN_BLOCK_DELAY = 300; // max speed, time between each block movement in ms
+  private static final int MAX_BLOCK_DELAY = 1500; // min speed, time between each block movement in ms
+  private static final int TIME_AT_MAX_SPEED = 30; // seconds it takes block to reach max speed
+
+  private final static double BOUNDING_RADIUS = 0.1;
+  private final static double MOVE_AMOUNT = 0.05;
+
+  private final ControllableModel model;
+  private final Collision collision;
+  private final TickClock clock; // null when the model keeps its own time
+  private TickListener listener;
+
+  // time since the blocks last moved, and the delay until they move next, only used by tick
+  private int sinceBlockMove;
+  private int blockDelay = MAX_BLOCK_DELAY;
+
+  public GameEngine(ControllableModel model) {
+    if (model == null) {
+      throw new NullPointerException();
+    }
+
+    this.model = model;
+    this.collision = new Collision(model, BOUNDING_RADIUS);
+    this.clock = null;
+  }
+
+  /**
+   * Engine advancing {@code clock} once per tick, give the same clock to the model and every game is
+   * decided by the model's seed and the inputs alone
+   */
+  public GameEngine(ControllableModel model, TickClock clock) {
+    if (model == null || clock == null) {
+      throw new NullPointerException();
+    }
+
+    this.model = model;
+    this.collision = new Collision(model, BOUNDING_RADIUS);
+    this.clock = clock;
+  }
+
+  /**
+   * @param listener told about every tick and new game from now on, null for none
+   */
+  public void setTickListener(TickListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Advance the game by {@code TICK_MS}, moving the player by given input and the blocks once
+   * their delay has passed. Does nothing unless the game is active.
+   * @param input mask of held down directions, see {@code Direction.bit()}
+   */
+  public void tick(int input) {
+    if (model.getGameState() != GameState.ACTIVE) {
+      return;
+    }
+
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    advance(input);
+    if (clock != null) {
+      clock.advance();
+    }
+    if (Metrics.ENABLED) {
+      Metrics.TICK_NANOS.record(System.nanoTime() - start);
+    }
+
+    if (listener != null) {
+      listener.ticked(input);
+    }
+  }
+
+  private void advance(int input) {
+    movePlayer(input);
+    if (model.getGameState() != GameState.ACTIVE) {
+      return;
+    }
+
+    sinceBlockMove += TICK_MS;
+    if (sinceBlockMove >= blockDelay) {
+      sinceBlockMove = 0;
+      stepBlocks();
+      blockDelay = blockDelay();
+    }
+  }
+
+  /**
+   * start a new game on the model and forget the block timing of the previous one
+   */
+  public void startNewGame() {
+    model.startNewGame();
+    reset();
+    if (listener != null) {
+      listener.newGame();
+    }
+  }
+
+  /**
+   * forget block timing of the previous game, call after starting a new game
+   */
+  public void reset() {
+    sinceBlockMove = 0;
+    blockDelay = MAX_BLOCK_DELAY;
+  }
+
+  /**
+   * move and rotate the player one step according to given input
+   * @param input mask of held down directions, see {@code Direction.bit()}
+   */
+  public void movePlayer(int input) {
+    // movement directions are quarter turns of the view direction, no trigonometry needed
+    var dir = model.getPlayerDir();
+    double moveX = 0;
+    double moveY = 0;
+
+    boolean isMoving = false;
+    for (var d : Direction.values()) {
+      if (d.in(input)) {
+        switch (d) {
+          case FRONT -> {
+            moveX += dir.x();
+            moveY += dir.y();
+          }
+          case BACK -> {
+            moveX -= dir.x();
+            moveY -= dir.y();
+          }
+          case LEFT -> {
+            moveX -= dir.y();
+            moveY += dir.x();
+          }
+          case RIGHT -> {
+            moveX += dir.y();
+            moveY -= dir.x();
+          }
+          case ROT_LEFT -> model.rotatePlayerDir(MOVE_AMOUNT);
+          case ROT_RIGHT -> model.rotatePlayerDir(-MOVE_AMOUNT);
+        }
+        isMoving |= d != Direction.ROT_LEFT && d != Direction.ROT_RIGHT;
+      }
+    }
+
+    double length = Math.sqrt(moveX * moveX + moveY * moveY);
+    // opposite keys cancel out
+    if (isMoving && length > 0) {
+      moveX *= MOVE_AMOUNT / length;
+      moveY *= MOVE_AMOUNT / length;
+
+      var currentPos = model.getPlayerPos();
+      double x = currentPos.x();
+      double y = currentPos.y();
+
+      // bounds checking
+      if (!collision.fits(x + moveX, y + moveY)) {
+        if (!collision.slide(x, y, moveX, moveY)) {
+          return;
+        }
+        moveX = collision.slideX();
+        moveY = collision.slideY();
+      }
+
+      var nextPos = new Vec2D(x + moveX, y + moveY);
+      model.setPlayerPos(nextPos);
+
+      if (model.checkGridCell(new GridVec(nextPos)) == 2) {
+        model.setGameOver();
+      }
+    }
+  }
+
+  /**
+   * move every block one step towards the player, ending the game if one reaches it
+   */
+  public void stepBlocks() {
+    model.moveBlocks(model.findBlockPaths());
+    if (model.getBlockPositions().contains(new GridVec(model.getPlayerPos()))) {
+      model.setGameOver();
+    }
+  }
+
+  /**
+   * @return time in ms between block moves at the current point of the game, shrinks as time passes
+   */
+  public int blockDelay() {
+    int sinceStart = (int) (model.timeSinceStart() / 1000L);
+    return Math.max(-sinceStart * (MAX_BLOCK_DELAY - MIN_BLOCK_DELAY) / TIME_AT_MAX_SPEED + MAX_BLOCK_DELAY, MIN_BLOCK_DELAY);
+  }
+
+  /**
+   * @return 0 at the start of a game up to 1 once blocks reach max speed
+   */
+  public double blockSpeedFraction() {
+    return blockSpeedFraction(model.timeSinceStart());
+  }
+
+  /**
+   * @param timeSinceStart game time in ms
+   * @return 0 at the start of a game up to 1 once blocks reach max speed
+   */
+  public static double blockSpeedFraction(long timeSinceStart) {
+    int sinceStart = (int) (timeSinceStart / 1000L);
+    return Math.min((double) sinceStart / TIME_AT_MAX_SPEED, 1.);
+  }
+
+  /**
+   * slide a move blocked by a wall along it
+   * @return the move actually taken, null if there is none
+   */
+  Vec2D wallSlide(Vec2D pos, Vec2D dir) {
+    if (!collision.slide(pos.x(), pos.y(), dir.x(), dir.y())) {
+      return null;
+    }
+    return new Vec2D(collision.slideX(), collision.slideY());
+  }
+
+  /**
+   * checking if the circle with radius {@code BOUNDING_RADIUS} is free
+   */
+  boolean isValidPlayerPos(Vec2D pos) {
+    return collision.fits(pos.x(), pos.y());
+  }
+}
@@ -0,0 +1,149 @@
+package controller;
+
+import model.GameState;
+import view.GameSnapshot;
+import view.View;
+import view.ViewableModel;
+
+import java.awt.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the game on its own thread, replacing Swing timers.
+ * <br/>
+ * The simulation advances in fixed steps of {@code GameEngine.TICK_MS}, however long frames take.
+ * Frames are drawn actively into the window's {@code BufferStrategy} as often as the target frame
+ * rate allows, with the camera interpolated between the last two simulation steps so motion stays
+ * smooth at refresh rates above the tick rate. The EDT only delivers key events.
+ * <br/>
+ * After every tick the loop publishes a {@code GameSnapshot} of the model, and frames are drawn from
+ * that alone. Other threads may pick up the latest one with {@code snapshot()} and draw from it
+ * without locks.
+ */
+public class GameLoop implements Runnable {
+  private static final long TICK_NANOS = GameEngine.TICK_MS * 1_000_000L;
+  // longest stretch of time caught up on at once, avoids a spiral of death after a long stall
+  private static final long MAX_CATCH_UP_NANOS = 250_000_000L;
+
+  private final ControllableModel model;
+  private final ViewableModel viewable; // the same model, as seen by the view
+  private final GameEngine engine;
+  private final View view;
+  private final KeyController keys;
+  private final Window window;
+  private final FramePacer pacer;
+  private final BlockTint tint;
+
+  private volatile boolean running;
+  private Thread thread;
+
+  // state after the latest tick, replaced as a whole once per tick
+  private volatile GameSnapshot snapshot;
+
+  /**
+   * @param window top level window holding {@code view}, frames are drawn into its buffer strategy
+   * @param targetFps frames drawn per second at most, 0 for as many as possible
+   */
+  public <M extends ControllableModel & ViewableModel> GameLoop(M model, View view, KeyController keys, Window window,
+                                                                 int targetFps) {
+    this(model, new GameEngine(model), view, keys, window, targetFps);
+  }
+
+  /**
+   * @param engine engine playing {@code model}, lets the caller pick its clock and listener
+   * @param window top level window holding {@code view}, frames are drawn into its buffer strategy
+   * @param targetFps frames drawn per second at most, 0 for as many as possible
+   */
+  public <M extends ControllableModel & ViewableModel> GameLoop(M model, GameEngine engine, View view,
+                                                                 KeyController keys, Window window, int targetFps) {
+    if (model == null || engine == null || view == null || keys == null || window == null) {
+      throw new NullPointerException();
+    }
+
+    this.model = model;
+    this.viewable = model;
+    this.engine = engine;
+    this.view = view;
+    this.keys = keys;
+    this.window = window;
+    this.pacer = new FramePacer(targetFps);
+    this.tint = new BlockTint(view);
+  }
+
+  /**
+   * start the loop thread, {@code window} must be showing
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      throw new IllegalStateException("already started");
+    }
+
+    window.setIgnoreRepaint(true);
+    view.setActiveRendering(true);
+    window.createBufferStrategy(2);
+
+    running = true;
+    thread = new Thread(this, "game-loop");
+    thread.start();
+  }
+
+  /**
+   * @return state of the game after the latest tick, null before the loop started
+   */
+  public GameSnapshot snapshot() {
+    return snapshot;
+  }
+
+  /**
+   * stop the loop thread and wait for it to finish
+   */
+  public void stop() throws InterruptedException {
+    running = false;
+    if (thread != null) {
+      thread.join();
+    }
+  }
+
+  @Override
+  public void run() {
+    snapshot = GameSnapshot.of(viewable, 0);
+    long previous = System.nanoTime();
+    long lag = 0;
+    pacer.restart();
+
+    while (running) {
+      long now = System.nanoTime();
+      lag += Math.min(now - previous, MAX_CATCH_UP_NANOS);
+      previous = now;
+
+      if (keys.takeNewGameRequest() && model.getGameState() == GameState.GAME_OVER) {
+        engine.startNewGame();
+        snapshot = GameSnapshot.of(viewable, snapshot.tick());
+        lag = 0;
+      }
+
+      while (lag >= TICK_NANOS) {
+        engine.tick(keys.input());
+        snapshot = snapshot.next(viewable);
+        tint.update(engine.blockSpeedFraction());
+        lag -= TICK_NANOS;
+      }
+
+      if (render((double) lag / TICK_NANOS)) {
+        pacer.waitForNextFrame();
+      } else {
+        // nothing changed, and nothing will before the next tick
+        LockSupport.parkNanos(TICK_NANOS - lag);
+        pacer.restart();
+      }
+    }
+  }
+
+  /**
+   * @param alpha how far time has moved from the previous tick towards the next, 0 to 1
+   * @return false if nothing changed since the previous frame, which was left showing
+   */
+  private boolean render(double alpha) {
+    return view.renderTo(window, snapshot, alpha);
+  }
+}
@@ -0,0 +1,31 @@
+package controller;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Game time counted in fixed steps of {@code GameEngine.TICK_MS} rather than read off the wall, so a
+ * game plays out the same however fast or slow it is simulated. Advanced by {@code GameEngine.tick}.
+ */
+public final class TickClock implements LongSupplier {
+  // single writer, read by whoever draws the game
+  private volatile long ticks;
+
+  void advance() {
+    ticks++;
+  }
+
+  /**
+   * number of ticks played
+   */
+  public long ticks() {
+    return ticks;
+  }
+
+  /**
+   * @return game time in milliseconds
+   */
+  @Override
+  public long getAsLong() {
+    return ticks * GameEngine.TICK_MS;
+  }
+}
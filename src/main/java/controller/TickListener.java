@@ -0,0 +1,17 @@
+package controller;
+
+/**
+ * Told about every step taken by a {@code GameEngine}, called on the thread driving the engine
+ */
+public interface TickListener {
+  /**
+   * a tick of an active game has been played
+   * @param input mask of held down directions the tick was played with
+   */
+  void ticked(int input);
+
+  /**
+   * a new game has been started, before its first tick
+   */
+  void newGame();
+}
@@ -0,0 +1,107 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non negative longs, in the spirit of HdrHistogram.
+ * <br/>
+ * Every power of two range is split into {@code SUB_BUCKETS} equal buckets, so any recorded value is
+ * known to within about 6%, from nanoseconds up to {@code Long.MAX_VALUE}. Counts live in a fixed
+ * array of atomics, so recording never allocates or locks and is safe from any thread.
+ */
+public final class Histogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param value negative values are recorded as 0
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  public long count() {
+    return count.get();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * @param p in range 0 to 1
+   * @return upper bound of the bucket holding the {@code p}-th value, 0 if nothing was recorded
+   */
+  public long percentile(double p) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(p * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * forget everything recorded so far, not atomic with concurrent recording
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  public HistogramSnapshot snapshot() {
+    return new HistogramSnapshot(count(), mean(), percentile(0.5), percentile(0.9), percentile(0.99), max());
+  }
+
+  private static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int sub = (int) (value >>> magnitude) & (SUB_BUCKETS - 1);
+    return (magnitude + 1) * SUB_BUCKETS + sub;
+  }
+
+  private static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int magnitude = bucket / SUB_BUCKETS - 1;
+    if (magnitude >= 64 - SUB_BUCKET_BITS - 2) {
+      // top buckets would overflow
+      return Long.MAX_VALUE;
+    }
+    long sub = bucket % SUB_BUCKETS;
+    return ((SUB_BUCKETS + sub + 1) << magnitude) - 1;
+  }
+}
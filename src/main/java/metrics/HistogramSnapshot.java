@@ -0,0 +1,54 @@
+package metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Summary of a {@code Histogram} at one point in time, shown as composite data over JMX
+ */
+public final class HistogramSnapshot {
+  private final long count;
+  private final double mean;
+  private final long p50;
+  private final long p90;
+  private final long p99;
+  private final long max;
+
+  @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+  public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long max) {
+    this.count = count;
+    this.mean = mean;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.max = max;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public long getP50() {
+    return p50;
+  }
+
+  public long getP90() {
+    return p90;
+  }
+
+  public long getP99() {
+    return p99;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count %d, mean %.1f, p50 %d, p90 %d, p99 %d, max %d", count, mean, p50, p90, p99, max);
+  }
+}
@@ -0,0 +1,133 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Global registry of runtime metrics.
+ * <br/>
+ * Switched on with {@code -Dmetrics.enabled=true}. Call sites guard recording with
+ * {@code if (Metrics.ENABLED)}, a static final the JIT folds away, so when off not even the clock is read.
+ */
+public final class Metrics implements MetricsMXBean {
+  public static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+
+  public static final Histogram FRAME_NANOS = new Histogram();
+  public static final Histogram FRAME_SCALE_PERCENT = new Histogram();
+  public static final Histogram RAY_STEPS_PER_FRAME = new Histogram();
+  public static final Histogram PATH_NANOS = new Histogram();
+  public static final Histogram PATH_EXPANSIONS = new Histogram();
+  public static final Histogram TICK_NANOS = new Histogram();
+  public static final Histogram SERVER_TICK_NANOS = new Histogram();
+  public static final Histogram MAP_GENERATION_NANOS = new Histogram();
+  public static final Histogram CHUNK_GENERATION_NANOS = new Histogram();
+
+  private static final String OBJECT_NAME = "escape_the_block:type=Metrics";
+
+  // previous allocation sample, only touched by whoever reads the MBean
+  private long lastAllocatedBytes = -1;
+  private long lastSampleNanos;
+
+  private Metrics() {}
+
+  /**
+   * register the MBean with the platform MBean server, does nothing unless metrics are enabled
+   */
+  public static synchronized void register() {
+    if (!ENABLED) {
+      return;
+    }
+
+    try {
+      var server = ManagementFactory.getPlatformMBeanServer();
+      var name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new Metrics(), name);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("could not register metrics MBean", e);
+    }
+  }
+
+  @Override
+  public HistogramSnapshot getFrameNanos() {
+    return FRAME_NANOS.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getFrameScalePercent() {
+    return FRAME_SCALE_PERCENT.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getRayStepsPerFrame() {
+    return RAY_STEPS_PER_FRAME.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getPathNanos() {
+    return PATH_NANOS.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getPathExpansions() {
+    return PATH_EXPANSIONS.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getTickNanos() {
+    return TICK_NANOS.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getServerTickNanos() {
+    return SERVER_TICK_NANOS.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getMapGenerationNanos() {
+    return MAP_GENERATION_NANOS.snapshot();
+  }
+
+  @Override
+  public HistogramSnapshot getChunkGenerationNanos() {
+    return CHUNK_GENERATION_NANOS.snapshot();
+  }
+
+  @Override
+  public synchronized double getAllocationRate() {
+    if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+        || !threads.isThreadAllocatedMemorySupported()) {
+      return Double.NaN;
+    }
+
+    long allocated = 0;
+    for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      allocated += Math.max(bytes, 0);
+    }
+    long now = System.nanoTime();
+
+    double rate = Double.NaN;
+    if (lastAllocatedBytes >= 0 && now > lastSampleNanos) {
+      // threads that died since the last sample take their bytes with them, never report below zero
+      rate = Math.max(0, allocated - lastAllocatedBytes) / ((now - lastSampleNanos) / 1e9);
+    }
+    lastAllocatedBytes = allocated;
+    lastSampleNanos = now;
+    return rate;
+  }
+
+  @Override
+  public void reset() {
+    FRAME_NANOS.reset();
+    FRAME_SCALE_PERCENT.reset();
+    RAY_STEPS_PER_FRAME.reset();
+    PATH_NANOS.reset();
+    PATH_EXPANSIONS.reset();
+    TICK_NANOS.reset();
+    SERVER_TICK_NANOS.reset();
+    MAP_GENERATION_NANOS.reset();
+    CHUNK_GENERATION_NANOS.reset();
+  }
+}
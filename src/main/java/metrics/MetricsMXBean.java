@@ -0,0 +1,61 @@
+package metrics;
+
+/**
+ * Runtime costs of the game, registered as {@code escape_the_block:type=Metrics}
+ */
+public interface MetricsMXBean {
+  /**
+   * time to render one frame, in nanoseconds
+   */
+  HistogramSnapshot getFrameNanos();
+
+  /**
+   * resolution frames are rendered at, in percent of the panel's width and height
+   */
+  HistogramSnapshot getFrameScalePercent();
+
+  /**
+   * cells stepped through by all rays of one frame
+   */
+  HistogramSnapshot getRayStepsPerFrame();
+
+  /**
+   * time to answer one path query, in nanoseconds
+   */
+  HistogramSnapshot getPathNanos();
+
+  /**
+   * cells expanded by one path query
+   */
+  HistogramSnapshot getPathExpansions();
+
+  /**
+   * time of one fixed simulation step, in nanoseconds
+   */
+  HistogramSnapshot getTickNanos();
+
+  /**
+   * time of one server tick, stepping every session's game and sending its snapshot, in nanoseconds
+   */
+  HistogramSnapshot getServerTickNanos();
+
+  /**
+   * time to build one map, in nanoseconds
+   */
+  HistogramSnapshot getMapGenerationNanos();
+
+  /**
+   * time to generate one chunk of an unbounded map, in nanoseconds
+   */
+  HistogramSnapshot getChunkGenerationNanos();
+
+  /**
+   * bytes allocated per second by all live threads, averaged since the previous call
+   */
+  double getAllocationRate();
+
+  /**
+   * clear all histograms
+   */
+  void reset();
+}
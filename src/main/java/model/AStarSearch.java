@@ -0,0 +1,253 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Reusable A* search over the cells of a {@code SearchGrid}.
+ * <br/>
+ * Cells are plain int indices and the open set is a binary heap stored in parallel primitive arrays,
+ * the heap sifts exactly like {@code java.util.PriorityQueue} so ties are broken the same way as the
+ * original object based search. Visited flags and parents are stamped with a generation counter so
+ * nothing has to be cleared or allocated between queries.
+ * <br/>
+ * Not thread safe, use one instance per thread.
+ */
+final class AStarSearch implements PathFinder {
+  private static final int INITIAL_HEAP_CAPACITY = 1024;
+
+  /**
+   * estimate of remaining distance to target
+   */
+  enum Heuristic {
+    // straight line distance, the original behaviour
+    EUCLIDEAN,
+    // tighter lower bound on a 4-connected grid, integer only
+    MANHATTAN
+  }
+
+  private final Heuristic heuristic;
+
+  // grid of the current query
+  private SearchGrid grid;
+  private int cols;
+  private int rows;
+
+  private final int[] visitedGen;
+  private final int[] parent;
+  private int generation;
+
+  // open set, one slot per heap entry
+  private double[] heapKey;
+  private int[] heapCell;
+  private int[] heapParent;
+  private int[] heapSteps;
+  private int heapSize;
+
+  private long lastExpansions;
+  private long lastNanos;
+
+  /**
+   * @param capacity largest number of cells of any grid searched
+   */
+  AStarSearch(int capacity, Heuristic heuristic) {
+    if (heuristic == null) {
+      throw new NullPointerException();
+    }
+
+    this.heuristic = heuristic;
+
+    visitedGen = new int[capacity];
+    parent = new int[capacity];
+
+    heapKey = new double[INITIAL_HEAP_CAPACITY];
+    heapCell = new int[INITIAL_HEAP_CAPACITY];
+    heapParent = new int[INITIAL_HEAP_CAPACITY];
+    heapSteps = new int[INITIAL_HEAP_CAPACITY];
+  }
+
+  /**
+   * A* from cell {@code from} to cell {@code to}
+   * @return index of the first step in the path, {@code from} if already there, -1 if there is no path
+   */
+  @Override
+  public int firstStep(SearchGrid grid, int from, int to) {
+    if (grid.rows() * grid.cols() > visitedGen.length) {
+      throw new IllegalArgumentException("grid larger than search capacity");
+    }
+
+    long start = System.nanoTime();
+    this.grid = grid;
+    cols = grid.cols();
+    rows = grid.rows();
+    long expansions = 0;
+
+    nextGeneration();
+    heapSize = 0;
+
+    int toX = to % cols;
+    int toY = to / cols;
+
+    push(from, -1, 0, estimate(from % cols, from / cols, toX, toY));
+
+    int result = -1;
+    while (heapSize > 0) {
+      int current = heapCell[0];
+      int currentParent = heapParent[0];
+      int steps = heapSteps[0];
+      pop();
+
+      if (visitedGen[current] == generation) {
+        continue;
+      }
+      visitedGen[current] = generation;
+      parent[current] = currentParent;
+      expansions++;
+
+      if (current == to) {
+        result = traceFirstStep(from, to);
+        break;
+      }
+
+      int x = current % cols;
+      int y = current / cols;
+      int nextSteps = steps + 1;
+
+      // neighbour order of the original search: down, up, right, left
+      if (y + 1 < rows && !grid.isWall(current + cols)) {
+        push(current + cols, current, nextSteps, estimate(x, y + 1, toX, toY));
+      }
+      if (y - 1 >= 0 && !grid.isWall(current - cols)) {
+        push(current - cols, current, nextSteps, estimate(x, y - 1, toX, toY));
+      }
+      if (x + 1 < cols && !grid.isWall(current + 1)) {
+        push(current + 1, current, nextSteps, estimate(x + 1, y, toX, toY));
+      }
+      if (x - 1 >= 0 && !grid.isWall(current - 1)) {
+        push(current - 1, current, nextSteps, estimate(x - 1, y, toX, toY));
+      }
+    }
+
+    lastExpansions = expansions;
+    lastNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  /**
+   * number of cells expanded by the last query
+   */
+  @Override
+  public long lastExpansions() {
+    return lastExpansions;
+  }
+
+  /**
+   * wall clock duration of the last query in nanoseconds
+   */
+  @Override
+  public long lastNanos() {
+    return lastNanos;
+  }
+
+  private int traceFirstStep(int from, int to) {
+    if (to == from) {
+      return from;
+    }
+
+    int current = to;
+    while (parent[current] != from) {
+      current = parent[current];
+    }
+    return current;
+  }
+
+  private double estimate(int x, int y, int toX, int toY) {
+    int dx = toX - x;
+    int dy = toY - y;
+
+    return switch (heuristic) {
+      case EUCLIDEAN -> Math.sqrt(dx * dx + dy * dy);
+      case MANHATTAN -> Math.abs(dx) + Math.abs(dy);
+    };
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // wrapped around, old stamps could collide with new ones
+      Arrays.fill(visitedGen, 0);
+      generation = 1;
+    }
+  }
+
+  private void push(int cell, int from, int steps, double estimate) {
+    if (heapSize == heapKey.length) {
+      grow();
+    }
+
+    double key = steps + estimate;
+
+    // sift up, mirrors PriorityQueue.offer
+    int k = heapSize++;
+    while (k > 0) {
+      int p = (k - 1) >>> 1;
+      if (key >= heapKey[p]) {
+        break;
+      }
+      move(p, k);
+      k = p;
+    }
+
+    heapKey[k] = key;
+    heapCell[k] = cell;
+    heapParent[k] = from;
+    heapSteps[k] = steps;
+  }
+
+  private void pop() {
+    int n = --heapSize;
+    if (n == 0) {
+      return;
+    }
+
+    double key = heapKey[n];
+    int cell = heapCell[n];
+    int from = heapParent[n];
+    int steps = heapSteps[n];
+
+    // sift down, mirrors PriorityQueue.poll
+    int k = 0;
+    int half = n >>> 1;
+    while (k < half) {
+      int child = 2 * k + 1;
+      int right = child + 1;
+      if (right < n && heapKey[child] > heapKey[right]) {
+        child = right;
+      }
+      if (key <= heapKey[child]) {
+        break;
+      }
+      move(child, k);
+      k = child;
+    }
+
+    heapKey[k] = key;
+    heapCell[k] = cell;
+    heapParent[k] = from;
+    heapSteps[k] = steps;
+  }
+
+  private void move(int src, int dst) {
+    heapKey[dst] = heapKey[src];
+    heapCell[dst] = heapCell[src];
+    heapParent[dst] = heapParent[src];
+    heapSteps[dst] = heapSteps[src];
+  }
+
+  private void grow() {
+    int capacity = heapKey.length * 2;
+    heapKey = Arrays.copyOf(heapKey, capacity);
+    heapCell = Arrays.copyOf(heapCell, capacity);
+    heapParent = Arrays.copyOf(heapParent, capacity);
+    heapSteps = Arrays.copyOf(heapSteps, capacity);
+  }
+}
@@ -0,0 +1,117 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Plain breadth first search from the start until the target is dequeued, the reference the other
+ * strategies are checked against. Expands every cell closer than the target, so it only pays off
+ * for short distances.
+ * <br/>
+ * Not thread safe, use one instance per thread.
+ */
+final class BreadthFirstSearch implements PathFinder {
+  private final int[] visitedGen;
+  private final int[] parent;
+  private final int[] queue;
+  private int generation;
+
+  private long lastExpansions;
+  private long lastNanos;
+
+  /**
+   * @param capacity largest number of cells of any grid searched
+   */
+  BreadthFirstSearch(int capacity) {
+    visitedGen = new int[capacity];
+    parent = new int[capacity];
+    queue = new int[capacity];
+  }
+
+  @Override
+  public int firstStep(SearchGrid grid, int from, int to) {
+    int cols = grid.cols();
+    int rows = grid.rows();
+    if (rows * cols > visitedGen.length) {
+      throw new IllegalArgumentException("grid larger than search capacity");
+    }
+
+    long start = System.nanoTime();
+    nextGeneration();
+
+    int head = 0;
+    int tail = 0;
+    visitedGen[from] = generation;
+    parent[from] = -1;
+    queue[tail++] = from;
+
+    int result = -1;
+    while (head < tail) {
+      int current = queue[head++];
+      if (current == to) {
+        result = traceFirstStep(from, to);
+        break;
+      }
+
+      int x = current % cols;
+      int y = current / cols;
+
+      // neighbour order of AStarSearch: down, up, right, left
+      if (y + 1 < rows) {
+        tail = visit(grid, current, current + cols, tail);
+      }
+      if (y > 0) {
+        tail = visit(grid, current, current - cols, tail);
+      }
+      if (x + 1 < cols) {
+        tail = visit(grid, current, current + 1, tail);
+      }
+      if (x > 0) {
+        tail = visit(grid, current, current - 1, tail);
+      }
+    }
+
+    lastExpansions = head;
+    lastNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  @Override
+  public long lastExpansions() {
+    return lastExpansions;
+  }
+
+  @Override
+  public long lastNanos() {
+    return lastNanos;
+  }
+
+  private int visit(SearchGrid grid, int from, int cell, int tail) {
+    if (visitedGen[cell] != generation && !grid.isWall(cell)) {
+      visitedGen[cell] = generation;
+      parent[cell] = from;
+      queue[tail++] = cell;
+    }
+    return tail;
+  }
+
+  private int traceFirstStep(int from, int to) {
+    if (to == from) {
+      return from;
+    }
+
+    int current = to;
+    while (parent[current] != from) {
+      current = parent[current];
+    }
+    return current;
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // wrapped around, old stamps could collide with new ones
+      Arrays.fill(visitedGen, 0);
+      generation = 1;
+    }
+  }
+}
@@ -0,0 +1,514 @@
+package model;
+
+import metrics.Metrics;
+import model.vector.GridVec;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map far too large to ever hold in memory, split into square chunks generated from the seed the
+ * first time they are touched.
+ * <br/>
+ * A chunk only depends on the seed and its own coordinates, so it can be dropped and later generated
+ * again exactly as it was. Chunks live in a least recently used cache, except chunks that were
+ * changed or hold a block, those are pinned for the whole game. Reads first go through a small lock
+ * free table indexed by the low bits of the chunk coordinates, neighbouring chunks never share a slot
+ * so the ray caster and the path finders almost never take the lock.
+ * <br/>
+ * Blocks are only guaranteed a path to the player at spawn. Path finding runs inside windows of at
+ * most {@code MAX_SEARCH_SIZE} cells per side, a block left further behind than that stops chasing.
+ */
+final class ChunkedGridMap extends WorldMap {
+  // a chunk row is exactly one long
+  static final int CHUNK_BITS = 6;
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  static final int WORLD_CHUNKS = 1 << 14;
+  static final int WORLD_SIZE = WORLD_CHUNKS * CHUNK_SIZE;
+
+  // chunks kept once the cache is full, pinned chunks come on top
+  static final int MAX_CACHED_CHUNKS = 4096;
+  // side of the largest window searched by findPath
+  static final int MAX_SEARCH_SIZE = 512;
+  // side of the window covered by the flow field, centered on its target
+  static final int FLOW_SIZE = 256;
+  private static final int SEARCH_MARGIN = 16;
+  // room around the spawn for carving paths between blocks and player
+  private static final int SPAWN_MARGIN = 4;
+
+  private static final double WALL_SPAWN_RATE = 0.3;
+
+  // any 16 x 16 chunks next to each other map to distinct slots
+  private static final int HOT_BITS = 4;
+  private static final int HOT_MASK = (1 << HOT_BITS) - 1;
+
+  private final long seed;
+  // access ordered, guarded by this
+  private final LinkedHashMap<Long, Chunk> chunks = new LinkedHashMap<>(256, 0.75f, true);
+  // every chunk in here is also in chunks
+  private final AtomicReferenceArray<Chunk> hot = new AtomicReferenceArray<>(1 << 2 * HOT_BITS);
+  // findPath may be called from several threads at once
+  private final EnumMap<PathMode, EnginePool<PathFinder>> finders;
+  // only allocated once used
+  private Window flowWindow;
+  private FlowField flowField;
+
+  private static final class Chunk {
+    final int cx;
+    final int cy;
+    // one row per long, bit x of row y is cell (x, y) within the chunk
+    final long[] walls = new long[CHUNK_SIZE];
+    final long[] blocks = new long[CHUNK_SIZE];
+    int blockCount;
+    boolean modified;
+
+    Chunk(int cx, int cy) {
+      this.cx = cx;
+      this.cy = cy;
+    }
+
+    /**
+     * pinned chunks differ from what the seed generates, they must never be evicted
+     */
+    boolean pinned() {
+      return modified || blockCount > 0;
+    }
+  }
+
+  /**
+   * @param seed decides every chunk of the map
+   * @param blockPositions starting positions of all blocks, each is guaranteed a path to the player
+   */
+  ChunkedGridMap(long seed, List<GridVec> blockPositions, GridVec playerPos) {
+    if (blockPositions == null || playerPos == null) {
+      throw new NullPointerException();
+    }
+    for (var blockPos : blockPositions) {
+      if (!validPos(blockPos)) {
+        throw new IllegalArgumentException("invalid blockPos");
+      }
+    }
+    if (!validPos(playerPos)) {
+      throw new IllegalArgumentException("invalid playerPos");
+    }
+
+    this.seed = seed;
+    finders = finderPools(MAX_SEARCH_SIZE * MAX_SEARCH_SIZE);
+
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    connectSpawn(playerPos, blockPositions);
+    if (Metrics.ENABLED) {
+      Metrics.MAP_GENERATION_NANOS.record(System.nanoTime() - start);
+    }
+
+    for (var blockPos : blockPositions) {
+      setBlock(blockPos);
+    }
+  }
+
+  /**
+   * Clear the starting area and carve paths from every block to the player, inside a window just
+   * large enough to hold them. Carving marks the chunks as modified, so the paths survive eviction
+   */
+  private void connectSpawn(GridVec playerPos, List<GridVec> blockPositions) {
+    int radius = 2;
+    for (var blockPos : blockPositions) {
+      int dist = Math.max(Math.abs(blockPos.x() - playerPos.x()), Math.abs(blockPos.y() - playerPos.y()));
+      radius = Math.max(radius, dist + SPAWN_MARGIN);
+    }
+
+    var window = new Window();
+    int x0 = Math.max(0, playerPos.x() - radius);
+    int y0 = Math.max(0, playerPos.y() - radius);
+    window.moveTo(x0, y0,
+        Math.min(WORLD_SIZE, playerPos.x() + radius + 1) - x0,
+        Math.min(WORLD_SIZE, playerPos.y() + radius + 1) - y0);
+
+    // the window border doubles as the outer ring MapGenerator expects
+    int cols = window.cols();
+    int rows = window.rows();
+    var walls = new long[GridMap.words(rows * cols)];
+    for (int i = 0; i < rows * cols; i++) {
+      if (window.isWall(i)) {
+        walls[i >>> 6] |= 1L << i;
+      }
+    }
+
+    var reserved = new ArrayList<>(blockPositions);
+    for (int dy = -1; dy <= 1; dy++) {
+      for (int dx = -1; dx <= 1; dx++) {
+        reserved.add(new GridVec(playerPos.x() + dx, playerPos.y() + dy));
+      }
+    }
+    for (var pos : reserved) {
+      int i = window.index(pos);
+      walls[i >>> 6] &= ~(1L << i);
+    }
+
+    var localBlocks = new ArrayList<GridVec>(blockPositions.size());
+    for (var blockPos : blockPositions) {
+      localBlocks.add(new GridVec(blockPos.x() - x0, blockPos.y() - y0));
+    }
+    MapGenerator.connect(walls, rows, cols, new GridVec(playerPos.x() - x0, playerPos.y() - y0), localBlocks);
+
+    for (int i = 0; i < rows * cols; i++) {
+      int x = x0 + i % cols;
+      int y = y0 + i / cols;
+      if ((walls[i >>> 6] & 1L << i) == 0 && isWall(x, y)) {
+        var chunk = chunk(x >> CHUNK_BITS, y >> CHUNK_BITS);
+        chunk.walls[y & CHUNK_MASK] &= ~(1L << x);
+        chunk.modified = true;
+      }
+    }
+  }
+
+  @Override
+  boolean validPos(GridVec pos) {
+    if (pos == null) {
+      throw new NullPointerException();
+    }
+
+    return pos.x() >= 0 && pos.x() < WORLD_SIZE && pos.y() >= 0 && pos.y() < WORLD_SIZE;
+  }
+
+  @Override
+  int get(GridVec pos) throws IndexOutOfBoundsException {
+    if (!validPos(pos)) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    var chunk = chunk(pos.x() >> CHUNK_BITS, pos.y() >> CHUNK_BITS);
+    int row = pos.y() & CHUNK_MASK;
+    return (int) (chunk.walls[row] >>> pos.x() & 1L) | (int) (chunk.blocks[row] >>> pos.x() & 1L) << 1;
+  }
+
+  @Override
+  public int cols() {
+    return WORLD_SIZE;
+  }
+
+  @Override
+  public int rows() {
+    return WORLD_SIZE;
+  }
+
+  /**
+   * walls only, blocks are drawn as entities
+   */
+  @Override
+  public int cell(int x, int y) {
+    var chunk = chunk(x >> CHUNK_BITS, y >> CHUNK_BITS);
+    int row = y & CHUNK_MASK;
+    // shifts only use the low 6 bits of x, which is the column within the chunk
+    return (int) (chunk.walls[row] >>> x & 1L);
+  }
+
+  /**
+   * generated terrain leaves no empty squares worth tracking, rays walk it cell by cell
+   */
+  @Override
+  public int emptyShift(int x, int y) {
+    return 0;
+  }
+
+  /**
+   * chunks never change once generated
+   */
+  @Override
+  public long version() {
+    return 0;
+  }
+
+  @Override
+  boolean isSolid(int x, int y) {
+    return x < 0 || x >= WORLD_SIZE || y < 0 || y >= WORLD_SIZE || isWall(x, y);
+  }
+
+  /**
+   * unchecked wall test
+   */
+  boolean isWall(int x, int y) {
+    return (chunk(x >> CHUNK_BITS, y >> CHUNK_BITS).walls[y & CHUNK_MASK] & 1L << x) != 0;
+  }
+
+  private void setBlock(GridVec pos) throws IndexOutOfBoundsException {
+    if (!validPos(pos)) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    var chunk = chunk(pos.x() >> CHUNK_BITS, pos.y() >> CHUNK_BITS);
+    int row = pos.y() & CHUNK_MASK;
+    long bit = 1L << pos.x();
+    if ((chunk.blocks[row] & bit) == 0) {
+      chunk.blocks[row] |= bit;
+      chunk.blockCount++;
+    }
+  }
+
+  @Override
+  void clearBlock(GridVec pos) throws IndexOutOfBoundsException {
+    if (!validPos(pos)) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    var chunk = chunk(pos.x() >> CHUNK_BITS, pos.y() >> CHUNK_BITS);
+    int row = pos.y() & CHUNK_MASK;
+    long bit = 1L << pos.x();
+    if ((chunk.blocks[row] & bit) != 0) {
+      chunk.blocks[row] &= ~bit;
+      chunk.blockCount--;
+    }
+  }
+
+  @Override
+  void moveBlocks(List<GridVec> from, List<GridVec> to) {
+    for (var pos : from) {
+      clearBlock(pos);
+    }
+    for (var pos : to) {
+      setBlock(pos);
+    }
+  }
+
+  /**
+   * search inside a window around both ends, the window is widened when no path is found in it
+   * @return the first step in the path
+   */
+  @Override
+  GridVec findPath(GridVec from, GridVec to, PathMode mode) {
+    var pool = finders.get(mode);
+    if (pool == null) {
+      throw new IllegalArgumentException(mode + " does not search per query");
+    }
+
+    var search = pool.acquire();
+    var window = new Window();
+    GridVec step = null;
+
+    for (int margin = SEARCH_MARGIN; margin <= MAX_SEARCH_SIZE / 2 && step == null; margin *= 4) {
+      if (!window.fit(from, to, margin)) {
+        break;
+      }
+
+      int i = search.firstStep(window, window.index(from), window.index(to));
+      if (Metrics.ENABLED) {
+        Metrics.PATH_NANOS.record(search.lastNanos());
+        Metrics.PATH_EXPANSIONS.record(search.lastExpansions());
+      }
+      if (i >= 0) {
+        step = window.pos(i);
+      }
+    }
+    pool.release(search);
+
+    if (step == null) {
+      System.err.println("No path found");
+    }
+    return step;
+  }
+
+  /**
+   * The windowed {@code findPath} already keeps searches local, an unbounded world has no sector
+   * graph to precompute
+   * @return the first step in the path
+   */
+  @Override
+  GridVec findHierarchicalPath(GridVec from, GridVec to) {
+    return findPath(from, to);
+  }
+
+  /**
+   * First step along a BFS distance field covering a {@code FLOW_SIZE} window centered on {@code to},
+   * falls back to {@code findPath} for pursuers outside of it
+   * <br/>
+   * Unlike {@code findPath} this is not thread safe, the field is shared
+   * @return the first step in the path
+   */
+  @Override
+  GridVec findFlowStep(GridVec from, GridVec to) {
+    if (flowField == null) {
+      flowWindow = new Window();
+      flowWindow.moveTo(0, 0, FLOW_SIZE, FLOW_SIZE);
+      flowField = new FlowField(flowWindow);
+    }
+
+    int x0 = Math.max(0, Math.min(WORLD_SIZE - FLOW_SIZE, to.x() - FLOW_SIZE / 2));
+    int y0 = Math.max(0, Math.min(WORLD_SIZE - FLOW_SIZE, to.y() - FLOW_SIZE / 2));
+    if (x0 != flowWindow.x0 || y0 != flowWindow.y0) {
+      flowWindow.moveTo(x0, y0, FLOW_SIZE, FLOW_SIZE);
+      flowField.invalidate();
+    }
+    if (!flowWindow.inside(from)) {
+      return findPath(from, to);
+    }
+
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    flowField.setTarget(flowWindow.index(to));
+    long expanded = flowField.expansions();
+    int step = flowField.firstStep(flowWindow.index(from));
+    if (Metrics.ENABLED) {
+      Metrics.PATH_NANOS.record(System.nanoTime() - start);
+      Metrics.PATH_EXPANSIONS.record(flowField.expansions() - expanded);
+    }
+
+    // the only path might leave the window
+    return step >= 0 ? flowWindow.pos(step) : findPath(from, to);
+  }
+
+  private static int slot(int cx, int cy) {
+    return (cy & HOT_MASK) << HOT_BITS | cx & HOT_MASK;
+  }
+
+  private Chunk chunk(int cx, int cy) {
+    int slot = slot(cx, cy);
+    var chunk = hot.get(slot);
+    if (chunk == null || chunk.cx != cx || chunk.cy != cy) {
+      chunk = load(cx, cy, slot);
+    }
+    return chunk;
+  }
+
+  private synchronized Chunk load(int cx, int cy, int slot) {
+    long key = (long) cx << 32 | cy & 0xffffffffL;
+    var chunk = chunks.get(key);
+    if (chunk == null) {
+      chunk = generate(cx, cy);
+      chunks.put(key, chunk);
+    }
+
+    hot.set(slot, chunk);
+    evict();
+    return chunk;
+  }
+
+  /**
+   * drop the least recently loaded chunks until the cache fits again, skipping pinned and hot ones
+   */
+  private void evict() {
+    var it = chunks.values().iterator();
+    while (chunks.size() > MAX_CACHED_CHUNKS && it.hasNext()) {
+      var chunk = it.next();
+      if (!chunk.pinned() && hot.get(slot(chunk.cx, chunk.cy)) != chunk) {
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * walls of a chunk, decided by nothing but the seed and the chunk coordinates
+   */
+  private Chunk generate(int cx, int cy) {
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    var chunk = new Chunk(cx, cy);
+    var random = new SplittableRandom(seed ^ ((long) cx << 32 | cy & 0xffffffffL) * 0x9E3779B97F4A7C15L);
+
+    for (int y = 0; y < CHUNK_SIZE; y++) {
+      long row = 0;
+      for (int x = 0; x < CHUNK_SIZE; x++) {
+        if (random.nextDouble() < WALL_SPAWN_RATE) {
+          row |= 1L << x;
+        }
+      }
+      chunk.walls[y] = row;
+    }
+
+    // outer wall ring of the whole map
+    for (int y = 0; y < CHUNK_SIZE; y++) {
+      if (cx == 0) {
+        chunk.walls[y] |= 1L;
+      }
+      if (cx == WORLD_CHUNKS - 1) {
+        chunk.walls[y] |= 1L << CHUNK_MASK;
+      }
+    }
+    if (cy == 0) {
+      chunk.walls[0] = -1L;
+    }
+    if (cy == WORLD_CHUNKS - 1) {
+      chunk.walls[CHUNK_MASK] = -1L;
+    }
+
+    if (Metrics.ENABLED) {
+      Metrics.CHUNK_GENERATION_NANOS.record(System.nanoTime() - start);
+    }
+    return chunk;
+  }
+
+  /**
+   * Rectangle of the map as seen by the path finders. Its border counts as wall, which keeps searches
+   * inside and stands in for the outer ring the flow field relies on
+   */
+  private final class Window implements SearchGrid {
+    private int x0 = -1;
+    private int y0 = -1;
+    private int cols;
+    private int rows;
+
+    void moveTo(int x0, int y0, int cols, int rows) {
+      this.x0 = x0;
+      this.y0 = y0;
+      this.cols = cols;
+      this.rows = rows;
+    }
+
+    /**
+     * cover both positions with given margin, shrunk to {@code MAX_SEARCH_SIZE} and the map
+     * @return false if they are too far apart for any window
+     */
+    boolean fit(GridVec a, GridVec b, int margin) {
+      int minX = Math.min(a.x(), b.x());
+      int minY = Math.min(a.y(), b.y());
+      int spanX = Math.max(a.x(), b.x()) - minX + 1;
+      int spanY = Math.max(a.y(), b.y()) - minY + 1;
+      // the border is never searched
+      int maxSpan = MAX_SEARCH_SIZE - 2;
+      if (spanX > maxSpan || spanY > maxSpan) {
+        return false;
+      }
+
+      int left = minX - Math.min(margin, (MAX_SEARCH_SIZE - spanX) / 2);
+      int top = minY - Math.min(margin, (MAX_SEARCH_SIZE - spanY) / 2);
+      int x0 = Math.max(0, left);
+      int y0 = Math.max(0, top);
+      moveTo(x0, y0,
+          Math.min(WORLD_SIZE, Math.min(left + MAX_SEARCH_SIZE, minX + spanX + margin)) - x0,
+          Math.min(WORLD_SIZE, Math.min(top + MAX_SEARCH_SIZE, minY + spanY + margin)) - y0);
+      return true;
+    }
+
+    boolean inside(GridVec pos) {
+      return pos.x() > x0 && pos.x() < x0 + cols - 1 && pos.y() > y0 && pos.y() < y0 + rows - 1;
+    }
+
+    int index(GridVec pos) {
+      return (pos.y() - y0) * cols + pos.x() - x0;
+    }
+
+    GridVec pos(int i) {
+      return new GridVec(x0 + i % cols, y0 + i / cols);
+    }
+
+    @Override
+    public int cols() {
+      return cols;
+    }
+
+    @Override
+    public int rows() {
+      return rows;
+    }
+
+    @Override
+    public boolean isWall(int i) {
+      int x = i % cols;
+      int y = i / cols;
+      return x == 0 || y == 0 || x == cols - 1 || y == rows - 1 || ChunkedGridMap.this.isWall(x0 + x, y0 + y);
+    }
+  }
+}
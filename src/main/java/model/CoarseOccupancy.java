@@ -0,0 +1,99 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Number of wall cells in every aligned 8x8 and 64x64 square of a map. A
+ * square counting zero is empty throughout, so a ray can cross it in one jump instead of cell by cell.
+ * <br/>
+ * The shift to jump by is kept per 8x8 square, so a look up is a single array read. Kept up to date
+ * by the map on every change of a cell. Squares reaching past the map edge always
+ * hold part of the outer wall ring, so no jump ever leaves the map.
+ */
+final class CoarseOccupancy {
+  static final int FINE_SHIFT = 3;
+  static final int COARSE_SHIFT = 6;
+
+  private final int cols;
+  private final int fineCols;
+  private final int fineRows;
+  private final int coarseCols;
+  private final int[] fine;
+  private final int[] coarse;
+  // emptyShift of every 8x8 square
+  private final byte[] shift;
+
+  CoarseOccupancy(int rows, int cols) {
+    this.cols = cols;
+    fineCols = (cols + (1 << FINE_SHIFT) - 1) >> FINE_SHIFT;
+    coarseCols = (cols + (1 << COARSE_SHIFT) - 1) >> COARSE_SHIFT;
+    fineRows = (rows + (1 << FINE_SHIFT) - 1) >> FINE_SHIFT;
+    fine = new int[fineCols * fineRows];
+    shift = new byte[fineCols * fineRows];
+    coarse = new int[coarseCols * ((rows + (1 << COARSE_SHIFT) - 1) >> COARSE_SHIFT)];
+  }
+
+  /**
+   * count every wall from scratch
+   */
+  void rebuild(long[] walls) {
+    Arrays.fill(fine, 0);
+    Arrays.fill(coarse, 0);
+
+    for (int w = 0; w < walls.length; w++) {
+      long word = walls[w];
+      while (word != 0) {
+        int i = w << 6 | Long.numberOfTrailingZeros(word);
+        int x = i % cols;
+        int y = i / cols;
+        fine[(y >> FINE_SHIFT) * fineCols + (x >> FINE_SHIFT)]++;
+        coarse[(y >> COARSE_SHIFT) * coarseCols + (x >> COARSE_SHIFT)]++;
+        word &= word - 1;
+      }
+    }
+
+    for (int i = 0; i < shift.length; i++) {
+      updateShift(i % fineCols, i / fineCols);
+    }
+  }
+
+  /**
+   * @param delta 1 if the cell became a wall, -1 if it was cleared
+   */
+  void change(int x, int y, int delta) {
+    int fineCount = fine[(y >> FINE_SHIFT) * fineCols + (x >> FINE_SHIFT)] += delta;
+    int coarseCount = coarse[(y >> COARSE_SHIFT) * coarseCols + (x >> COARSE_SHIFT)] += delta;
+
+    if (coarseCount == (delta > 0 ? 1 : 0)) {
+      // the 64x64 square just filled or emptied, all of its 8x8 squares change
+      int ratio = COARSE_SHIFT - FINE_SHIFT;
+      int x0 = x >> COARSE_SHIFT << ratio;
+      int y0 = y >> COARSE_SHIFT << ratio;
+      for (int fy = y0; fy < Math.min(y0 + (1 << ratio), fineRows); fy++) {
+        for (int fx = x0; fx < Math.min(x0 + (1 << ratio), fineCols); fx++) {
+          updateShift(fx, fy);
+        }
+      }
+    } else if (fineCount == (delta > 0 ? 1 : 0)) {
+      updateShift(x >> FINE_SHIFT, y >> FINE_SHIFT);
+    }
+  }
+
+  /**
+   * @return log2 of the side of the largest empty square holding the cell, 0 if none
+   */
+  int emptyShift(int x, int y) {
+    return shift[(y >> FINE_SHIFT) * fineCols + (x >> FINE_SHIFT)];
+  }
+
+  private void updateShift(int fx, int fy) {
+    int ratio = COARSE_SHIFT - FINE_SHIFT;
+    if (coarse[(fy >> ratio) * coarseCols + (fx >> ratio)] == 0) {
+      shift[fy * fineCols + fx] = COARSE_SHIFT;
+    } else if (fine[fy * fineCols + fx] == 0) {
+      shift[fy * fineCols + fx] = FINE_SHIFT;
+    } else {
+      shift[fy * fineCols + fx] = 0;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Idle search engines, lets several threads search the same map at once without allocating an
+ * engine per query. Holds at most one engine per core plus one, extra engines are dropped on release.
+ */
+final class EnginePool<T> {
+  private final AtomicReferenceArray<T> idle;
+  private final Supplier<T> factory;
+
+  EnginePool(Supplier<T> factory) {
+    if (factory == null) {
+      throw new NullPointerException();
+    }
+
+    this.factory = factory;
+    idle = new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors() + 1);
+  }
+
+  T acquire() {
+    for (int i = 0; i < idle.length(); i++) {
+      var engine = idle.getAndSet(i, null);
+      if (engine != null) {
+        return engine;
+      }
+    }
+
+    return factory.get();
+  }
+
+  void release(T engine) {
+    for (int i = 0; i < idle.length(); i++) {
+      if (idle.compareAndSet(i, null, engine)) {
+        return;
+      }
+    }
+  }
+}
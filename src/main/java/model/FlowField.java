@@ -0,0 +1,170 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Breadth first distance field rooted at a single target cell, usually the cell of the player.
+ * <br/>
+ * There is no incremental repair: whenever the target moves to another cell, even a neighbouring one,
+ * the field is discarded and the search starts over from the new cell. Only the start is cheap, the
+ * reset is a generation bump and cells are settled lazily, just far enough to answer the queries that
+ * are actually made. A pursuer standing {@code d} steps away costs the cells within distance
+ * {@code d} every time the target changes cell, after that every step down the gradient is O(1).
+ * <br/>
+ * Not thread safe, use one instance per thread.
+ */
+final class FlowField {
+  private final SearchGrid grid;
+  private final int rows;
+  private final int cols;
+
+  private final int[] settledGen;
+  private final int[] dist;
+  private int generation;
+
+  // BFS queue, every cell is enqueued at most once per generation
+  private final int[] queue;
+  private int head;
+  private int tail;
+
+  private int target = -1;
+
+  private long lastExpansions;
+
+  /**
+   * @param grid cells the field spans, its size must not change
+   */
+  FlowField(SearchGrid grid) {
+    if (grid == null) {
+      throw new NullPointerException();
+    }
+
+    this.grid = grid;
+    this.rows = grid.rows();
+    this.cols = grid.cols();
+
+    settledGen = new int[rows * cols];
+    dist = new int[rows * cols];
+    queue = new int[rows * cols];
+  }
+
+  /**
+   * root the field at given cell, does nothing if it already is
+   */
+  void setTarget(int cell) {
+    if (cell != target) {
+      target = cell;
+      reset();
+    }
+  }
+
+  /**
+   * discard all distances, needed whenever walls change
+   */
+  void invalidate() {
+    if (target >= 0) {
+      reset();
+    }
+  }
+
+  /**
+   * @return index of the neighbour one step closer to the target, {@code from} if already there,
+   * -1 if target is unreachable
+   */
+  int firstStep(int from) {
+    if (target < 0) {
+      throw new IllegalStateException("no target set");
+    }
+
+    int d = distance(from);
+    if (d < 0) {
+      return -1;
+    }
+    if (d == 0) {
+      return from;
+    }
+
+    // every cell closer than from is settled at this point, neighbour order of AStarSearch
+    if (isAt(from + cols, d - 1)) {
+      return from + cols;
+    }
+    if (isAt(from - cols, d - 1)) {
+      return from - cols;
+    }
+    if (isAt(from + 1, d - 1)) {
+      return from + 1;
+    }
+    return from - 1;
+  }
+
+  /**
+   * BFS distance from given cell to the target, expanding the field as needed
+   * @return -1 if unreachable
+   */
+  int distance(int cell) {
+    while (settledGen[cell] != generation && head < tail) {
+      expand();
+    }
+
+    return settledGen[cell] == generation ? dist[cell] : -1;
+  }
+
+  /**
+   * number of cells settled since the target last changed
+   */
+  long expansions() {
+    return lastExpansions;
+  }
+
+  private boolean isAt(int cell, int d) {
+    return cell >= 0 && cell < dist.length && settledGen[cell] == generation && dist[cell] == d;
+  }
+
+  private void expand() {
+    int current = queue[head++];
+    int x = current % cols;
+    int y = current / cols;
+    int nextDist = dist[current] + 1;
+    lastExpansions++;
+
+    if (y + 1 < rows) {
+      visit(current + cols, nextDist);
+    }
+    if (y - 1 >= 0) {
+      visit(current - cols, nextDist);
+    }
+    if (x + 1 < cols) {
+      visit(current + 1, nextDist);
+    }
+    if (x - 1 >= 0) {
+      visit(current - 1, nextDist);
+    }
+  }
+
+  private void visit(int cell, int d) {
+    if (settledGen[cell] != generation && !grid.isWall(cell)) {
+      settledGen[cell] = generation;
+      dist[cell] = d;
+      queue[tail++] = cell;
+    }
+  }
+
+  private void reset() {
+    generation++;
+    if (generation == 0) {
+      // wrapped around, old stamps could collide with new ones
+      Arrays.fill(settledGen, 0);
+      generation = 1;
+    }
+
+    head = 0;
+    tail = 0;
+    lastExpansions = 0;
+
+    if (!grid.isWall(target)) {
+      settledGen[target] = generation;
+      dist[target] = 0;
+      queue[tail++] = target;
+    }
+  }
+}
@@ -1,66 +1,155 @@
 package model;
 
+import metrics.Metrics;
 import model.vector.GridVec;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
-public class GridMap {
+public class GridMap extends WorldMap implements SearchGrid {
   public static int MIN_MAP_SIZE = 10;
   public static int MAX_MAP_SIZE = 1000;
 
   // chance of each grid cell being a wall when generating map
   private static final double WALL_SPAWN_RATE = 0.3;
 
-  private static final List<GridVec> MOVE_DIRECTIONS = List.of(
-      new GridVec(0, 1),
-      new GridVec(0, -1),
-      new GridVec(1, 0),
-      new GridVec(-1, 0)
-  );
+  static final int EMPTY = 0;
+  static final int WALL = 1;
+  static final int BLOCK = 2;
 
-  private List<List<Integer>> gridMap;
+  // cells are stored row major as bits, index == y * cols + x
+  private long[] walls;
+  // entity layer, kept apart from the walls so pathfinding only has to look at one of them
+  private final long[] blocks;
   private final int rows;
   private final int cols;
+  // findPath may be called from several threads at once
+  private final EnumMap<PathMode, EnginePool<PathFinder>> finders;
+  private final EnginePool<HierarchicalSearch> hierarchicalSearches;
+  private FlowField flowField; // only allocated once used
+  private volatile SectorGraph sectorGraph; // only built once used
+  private final CoarseOccupancy occupancy;
+  private long version;
 
   /**
    * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
    */
   GridMap(int mapSize, GridVec blockPos, GridVec playerPos) {
+    this(mapSize, List.of(blockPos), playerPos, new Random());
+  }
+
+  /**
+   * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
+   * @param blockPositions starting positions of all blocks, each is guaranteed a path to the player
+   * @param random source of the random walls
+   */
+  GridMap(int mapSize, List<GridVec> blockPositions, GridVec playerPos, Random random) {
+    this(mapSize, blockPositions, playerPos, random, WALL_SPAWN_RATE);
+  }
+
+  /**
+   * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
+   * @param blockPositions starting positions of all blocks, each is guaranteed a path to the player
+   * @param random source of the random walls
+   * @param wallRate chance of each cell inside the outer ring being a wall, in range 0 to 1
+   */
+  GridMap(int mapSize, List<GridVec> blockPositions, GridVec playerPos, Random random, double wallRate) {
     if (mapSize < MIN_MAP_SIZE || mapSize > MAX_MAP_SIZE) {
       throw new IllegalArgumentException("invalid map size");
     }
-    if (blockPos == null || playerPos == null) {
+    if (!(wallRate >= 0 && wallRate <= 1)) {
+      throw new IllegalArgumentException("invalid wall rate");
+    }
+    if (blockPositions == null || playerPos == null || random == null) {
       throw new NullPointerException();
     }
 
     rows = mapSize;
     cols = mapSize;
-
-    if (!validPos(blockPos)) {
-      throw new IllegalArgumentException("invalid blockPos");
-    } else if (!validPos(playerPos)) {
+    blocks = new long[words(rows * cols)];
+    occupancy = new CoarseOccupancy(rows, cols);
+    finders = finderPools(rows * cols);
+    hierarchicalSearches = new EnginePool<>(() -> new HierarchicalSearch(sectorGraph()));
+
+    for (var blockPos : blockPositions) {
+      if (!validPos(blockPos)) {
+        throw new IllegalArgumentException("invalid blockPos");
+      }
+    }
+    if (!validPos(playerPos)) {
       throw new IllegalArgumentException("invalid playerPos");
     }
 
-    var reserved = new ArrayList<GridVec>();
-    reserved.add(blockPos);
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    walls = MapGenerator.generate(rows, cols, wallRate, random, playerPos, blockPositions);
+    for (var blockPos : blockPositions) {
+      setBlock(blockPos);
+    }
+    occupancy.rebuild(walls);
+    if (Metrics.ENABLED) {
+      Metrics.MAP_GENERATION_NANOS.record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Map with the walls of a saved map, nothing is generated
+   * @param blockPositions starting positions of all blocks, pick them from the spawn area of the file
+   */
+  GridMap(MapFile file, List<GridVec> blockPositions) {
+    if (file == null || blockPositions == null) {
+      throw new NullPointerException();
+    }
+
+    rows = file.rows();
+    cols = file.cols();
+    walls = new long[words(rows * cols)];
+    blocks = new long[walls.length];
+    occupancy = new CoarseOccupancy(rows, cols);
+    finders = finderPools(rows * cols);
+    hierarchicalSearches = new EnginePool<>(() -> new HierarchicalSearch(sectorGraph()));
+
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    file.copyWalls(walls);
+    if (Metrics.ENABLED) {
+      Metrics.MAP_GENERATION_NANOS.record(System.nanoTime() - start);
+    }
 
-    // keeping starting area clear of blocks
-    for (int i = -1; i <= 1; i++) {
-      for (int j = -1; j <= 1; j++) {
-        reserved.add(GridVec.add(playerPos, new GridVec(j, i)));
+    for (var blockPos : blockPositions) {
+      if (!validPos(blockPos)) {
+        throw new IllegalArgumentException("invalid blockPos");
       }
+      setBlock(blockPos);
     }
+    occupancy.rebuild(walls);
+  }
+
+  /**
+   * open a saved map, without blocks
+   */
+  public static GridMap load(Path path) throws IOException {
+    return new GridMap(MapFile.open(path), List.of());
+  }
+
+  /**
+   * save the walls in the format read by {@code MapFile}, blocks are left out
+   */
+  public void save(Path path) throws IOException {
+    MapFile.write(path, rows, cols, walls);
+  }
+
+  static int words(int bits) {
+    return (bits + 63) >>> 6;
+  }
 
-    do {
-      gridMap = generateRandomMap(mapSize, reserved);
-      gridMap.get(blockPos.y()).set(blockPos.x(), 2);
-    } while (findPath(blockPos, playerPos) == null);
+  private int index(GridVec pos) {
+    return pos.y() * cols + pos.x();
   }
 
   /**
    * checks if position is on gridMap
    */
+  @Override
   boolean validPos(GridVec pos) {
     if (pos == null) {
       throw new NullPointerException();
@@ -72,142 +161,240 @@ public class GridMap {
   /**
    * @return value stored at given position
    */
+  @Override
   int get(GridVec pos) throws IndexOutOfBoundsException {
-    if (pos == null) {
-      throw new NullPointerException();
-    }
     if (!validPos(pos)) {
       throw new IndexOutOfBoundsException();
     }
 
-    return gridMap.get(pos.y()).get(pos.x());
+    return cell(index(pos));
+  }
+
+  /**
+   * unchecked read of a cell, {@code WALL} and {@code BLOCK} bits are combined without branching
+   */
+  int cell(int i) {
+    int word = i >>> 6;
+    return (int) (walls[word] >>> i & 1L) | (int) (blocks[word] >>> i & 1L) << 1;
+  }
+
+  @Override
+  public int cols() {
+    return cols;
+  }
+
+  @Override
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * walls only, blocks are drawn as entities
+   */
+  @Override
+  public int cell(int x, int y) {
+    int i = y * cols + x;
+    return (int) (walls[i >>> 6] >>> i & 1L);
+  }
+
+  @Override
+  public int emptyShift(int x, int y) {
+    return occupancy.emptyShift(x, y);
+  }
+
+  @Override
+  public long version() {
+    return version;
+  }
+
+  @Override
+  public boolean isWall(int i) {
+    return (walls[i >>> 6] & 1L << i) != 0;
+  }
+
+  @Override
+  boolean isSolid(int x, int y) {
+    return x < 0 || x >= cols || y < 0 || y >= rows || isWall(y * cols + x);
   }
 
   /**
    * Set value at given position
-   * @param val must be in range 0 to 99
+   * @param val must be {@code EMPTY} or {@code WALL}, the block lives in its own layer
    */
   void set(GridVec pos, int val) throws IndexOutOfBoundsException {
     if (pos == null) {
       throw new NullPointerException();
     }
-    if (val < 0 || val > 100) {
+    if (val != EMPTY && val != WALL) {
       throw new IllegalArgumentException("Invalid cell value");
     }
     if (!validPos(pos)) {
       throw new IndexOutOfBoundsException();
     }
 
-    gridMap.get(pos.y()).set(pos.x(), val);
+    int i = index(pos);
+    boolean wasWall = isWall(i);
+    if (val == WALL) {
+      walls[i >>> 6] |= 1L << i;
+    } else {
+      walls[i >>> 6] &= ~(1L << i);
+    }
+    if (isWall(i) != wasWall) {
+      occupancy.change(pos.x(), pos.y(), wasWall ? -1 : 1);
+      version++;
+    }
+
+    if (flowField != null) {
+      flowField.invalidate();
+    }
+    if (sectorGraph != null) {
+      sectorGraph.update(i);
+    }
   }
 
   /**
-   * A* algorithm
-   * approx. dist. == steps taken + Euclidean dist. to player
-   * @return the first step in the path
+   * place a block on the entity layer
    */
-  GridVec findPath(GridVec from, GridVec to) {
-    Queue<QueueElem> queue = new PriorityQueue<>();
-    queue.add(new QueueElem(from, null, 0, from.distance(to)));
-    Set<GridVec> visited = new HashSet<>();
-
-    while (!queue.isEmpty()) {
-      var current = queue.poll();
-      if (visited.contains(current.pos)) {
-        continue;
-      }
-      visited.add(current.pos);
+  void setBlock(GridVec pos) throws IndexOutOfBoundsException {
+    if (!validPos(pos)) {
+      throw new IndexOutOfBoundsException();
+    }
 
-      if (current.pos.equals(to)) {
-        var step = getFirstStep(current);
-        if (step == null) {
-          return from;
-        }
-        return step;
-      }
+    int i = index(pos);
+    blocks[i >>> 6] |= 1L << i;
+  }
 
-      addNextMoves(queue, current, to);
+  /**
+   * remove a block from the entity layer
+   */
+  @Override
+  void clearBlock(GridVec pos) throws IndexOutOfBoundsException {
+    if (!validPos(pos)) {
+      throw new IndexOutOfBoundsException();
     }
 
-    System.err.println("No path found");
-    return null;
+    int i = index(pos);
+    blocks[i >>> 6] &= ~(1L << i);
   }
 
-  private void addNextMoves(Queue<QueueElem> queue, QueueElem current, GridVec playerPos) {
-    for (var dir : MOVE_DIRECTIONS) {
-      var nextBlock = GridVec.add(current.pos, dir);
-      if (validPos(nextBlock) && get(nextBlock) == 0) {
-        queue.add(new QueueElem(nextBlock, current, current.steps + 1, nextBlock.distance(playerPos)));
-      }
+  /**
+   * move blocks as one batch, the entity layer never holds a half applied move
+   */
+  @Override
+  void moveBlocks(List<GridVec> from, List<GridVec> to) {
+    for (var pos : from) {
+      clearBlock(pos);
+    }
+    for (var pos : to) {
+      setBlock(pos);
     }
   }
 
-  private GridVec getFirstStep(QueueElem qe) {
-    var current = qe;
-    GridVec after = null;
+  /**
+   * one search over the whole map, A* estimates dist. == steps taken + Euclidean dist. to player
+   * @return the first step in the path
+   */
+  @Override
+  GridVec findPath(GridVec from, GridVec to, PathMode mode) {
+    var pool = finders.get(mode);
+    if (pool == null) {
+      throw new IllegalArgumentException(mode + " does not search per query");
+    }
+
+    var search = pool.acquire();
+    int step = search.firstStep(this, index(from), index(to));
+    if (Metrics.ENABLED) {
+      Metrics.PATH_NANOS.record(search.lastNanos());
+      Metrics.PATH_EXPANSIONS.record(search.lastExpansions());
+    }
+    pool.release(search);
 
-    while (current.prev != null) {
-      after = current.pos;
-      current = current.prev;
+    if (step < 0) {
+      System.err.println("No path found");
+      return null;
     }
 
-    return after;
+    return new GridVec(step % cols, step / cols);
   }
 
-  private List<List<Integer>> generateRandomMap(int mapSize, List<GridVec> reserved) {
-    List<List<Integer>> retList = new ArrayList<>(mapSize);
+  /**
+   * HPA* over sectors of {@code SectorGraph.SECTOR_SIZE} cells, the sector graph is built on first
+   * use and kept up to date by {@code set}
+   * @return the first step in the path
+   */
+  @Override
+  GridVec findHierarchicalPath(GridVec from, GridVec to) {
+    var search = hierarchicalSearches.acquire();
+    int step = search.firstStep(index(from), index(to));
+    if (Metrics.ENABLED) {
+      Metrics.PATH_NANOS.record(search.lastNanos());
+      Metrics.PATH_EXPANSIONS.record(search.lastExpansions());
+    }
+    hierarchicalSearches.release(search);
 
-    for (int i = 0; i < mapSize; i++) {
-      List<Integer> row = new ArrayList<>(mapSize);
-      row.add(1);
-      for (int j = 1; j < mapSize - 1; j++) {
-        if (i == 0 || i == mapSize - 1) {
-          row.add(1);
-        } else if (Math.random() < WALL_SPAWN_RATE && !occupied(i, j, reserved)) {
-          row.add(1);
-        } else {
-          row.add(0);
-        }
-      }
-      row.add(1);
+    if (step < 0) {
+      System.err.println("No path found");
+      return null;
+    }
+
+    return new GridVec(step % cols, step / cols);
+  }
 
-      retList.add(row);
+  /**
+   * First step along a BFS distance field rooted at {@code to}. The field is rebuilt from scratch,
+   * lazily, whenever {@code to} changes cell, queries towards the same cell after that are O(1)
+   * <br/>
+   * Unlike {@code findPath} this is not thread safe, the field is shared
+   * @return the first step in the path
+   */
+  @Override
+  GridVec findFlowStep(GridVec from, GridVec to) {
+    if (flowField == null) {
+      flowField = new FlowField(this);
     }
-    return retList;
+
+    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+    flowField.setTarget(index(to));
+    long expanded = flowField.expansions();
+    int step = flowField.firstStep(index(from));
+    if (Metrics.ENABLED) {
+      Metrics.PATH_NANOS.record(System.nanoTime() - start);
+      Metrics.PATH_EXPANSIONS.record(flowField.expansions() - expanded);
+    }
+    if (step < 0) {
+      System.err.println("No path found");
+      return null;
+    }
+
+    return new GridVec(step % cols, step / cols);
   }
 
-  private boolean occupied(int r, int c, List<GridVec> reserved) {
-    for (var p : reserved) {
-      if (p.x() == c && p.y() == r) {
-        return true;
+  private SectorGraph sectorGraph() {
+    var graph = sectorGraph;
+    if (graph == null) {
+      synchronized (this) {
+        graph = sectorGraph;
+        if (graph == null) {
+          graph = new SectorGraph(this);
+          sectorGraph = graph;
+        }
       }
     }
-
-    return false;
+    return graph;
   }
 
   @Override
   public String toString() {
     var s = new StringBuilder();
 
-    for (var r : gridMap) {
-      for (var d : r) {
-        s.append(d != 0 ? d : ".");
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        int d = cell(r * cols + c);
+        s.append(d != EMPTY ? d : ".");
       }
       s.append('\n');
     }
 
     return s.substring(0, s.length() - 1);
   }
-
-  private record QueueElem(GridVec pos, QueueElem prev, int steps, double heuristic) implements Comparable<QueueElem> {
-    @Override
-    public int compareTo(QueueElem o) {
-      if (o == null) {
-        throw new NullPointerException();
-      }
-
-      return Double.compare(steps + heuristic, o.steps + o.heuristic);
-    }
-  }
 }
@@ -0,0 +1,274 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * HPA* over a {@code SectorGraph}.
+ * <br/>
+ * The start and the target are tied into the abstract graph with a BFS inside their own sector, then
+ * A* runs over the sector nodes only and the first abstract edge is refined back into a grid step.
+ * A query touches two sectors of cells and the nodes between them, so its cost grows with the
+ * distance to the target and not with the size of the map. Paths are near optimal, entrances are
+ * crossed at fixed cells.
+ * <br/>
+ * Not thread safe, use one instance per thread.
+ */
+final class HierarchicalSearch {
+  private static final int INITIAL_HEAP_CAPACITY = 256;
+  // heap entry standing for the target, reached from the node in its parent slot
+  private static final int GOAL = -1;
+
+  private final SectorGraph graph;
+  private final SearchGrid grid;
+  private final int cols;
+  private final int rows;
+
+  // start and target tied into the abstract graph
+  private final SectorGraph.SectorSearch startSearch;
+  private final SectorGraph.SectorSearch goalSearch;
+
+  private final int[] visitedGen;
+  private final int[] parent;
+  private int generation;
+
+  // open set, one slot per heap entry
+  private int[] heapKey;
+  private int[] heapNode;
+  private int[] heapParent;
+  private int[] heapCost;
+  private int heapSize;
+
+  private long lastExpansions;
+  private long lastNanos;
+
+  HierarchicalSearch(SectorGraph graph) {
+    if (graph == null) {
+      throw new NullPointerException();
+    }
+
+    this.graph = graph;
+    grid = graph.grid();
+    cols = grid.cols();
+    rows = grid.rows();
+    startSearch = new SectorGraph.SectorSearch(graph);
+    goalSearch = new SectorGraph.SectorSearch(graph);
+
+    visitedGen = new int[rows * cols];
+    parent = new int[rows * cols];
+
+    heapKey = new int[INITIAL_HEAP_CAPACITY];
+    heapNode = new int[INITIAL_HEAP_CAPACITY];
+    heapParent = new int[INITIAL_HEAP_CAPACITY];
+    heapCost = new int[INITIAL_HEAP_CAPACITY];
+  }
+
+  /**
+   * @return index of the first step in the path, {@code from} if already there, -1 if there is no path
+   */
+  int firstStep(int from, int to) {
+    long start = System.nanoTime();
+    long cellsBefore = startSearch.expansions() + goalSearch.expansions();
+    long nodes = 0;
+
+    int result = -1;
+    int startSector = graph.sectorOf(from);
+    int goalSector = graph.sectorOf(to);
+    startSearch.run(startSector, from);
+
+    if (from == to) {
+      result = from;
+    } else if (startSector == goalSector && startSearch.distance(to) != SectorGraph.UNREACHABLE) {
+      result = startSearch.firstStep(to);
+    } else {
+      goalSearch.run(goalSector, to);
+      nextGeneration();
+      heapSize = 0;
+
+      int toX = to % cols;
+      int toY = to / cols;
+
+      var startNodes = graph.nodes(startSector);
+      for (int node : startNodes) {
+        int cost = startSearch.distance(node);
+        if (cost != SectorGraph.UNREACHABLE) {
+          push(node, from, cost, cost + estimate(node, toX, toY));
+        }
+      }
+
+      while (heapSize > 0) {
+        int current = heapNode[0];
+        int currentParent = heapParent[0];
+        int cost = heapCost[0];
+        pop();
+
+        if (current == GOAL) {
+          result = refine(from, currentParent);
+          break;
+        }
+        if (visitedGen[current] == generation) {
+          continue;
+        }
+        visitedGen[current] = generation;
+        parent[current] = currentParent;
+        nodes++;
+
+        int sector = graph.sectorOf(current);
+        if (sector == goalSector) {
+          int rest = goalSearch.distance(current);
+          if (rest != SectorGraph.UNREACHABLE) {
+            push(GOAL, current, cost + rest, cost + rest);
+          }
+        }
+
+        // edges inside the sector
+        var sectorNodes = graph.nodes(sector);
+        int slot = graph.slot(current);
+        for (int j = 0; j < sectorNodes.length; j++) {
+          int d = graph.distance(sector, slot, j);
+          if (j != slot && d != SectorGraph.UNREACHABLE) {
+            push(sectorNodes[j], current, cost + d, cost + d + estimate(sectorNodes[j], toX, toY));
+          }
+        }
+
+        // transitions to the neighbouring sectors
+        int x = current % cols;
+        int y = current / cols;
+        if (y + 1 < rows) {
+          transition(current, current + cols, sector, cost, toX, toY);
+        }
+        if (y > 0) {
+          transition(current, current - cols, sector, cost, toX, toY);
+        }
+        if (x + 1 < cols) {
+          transition(current, current + 1, sector, cost, toX, toY);
+        }
+        if (x > 0) {
+          transition(current, current - 1, sector, cost, toX, toY);
+        }
+      }
+    }
+
+    lastExpansions = nodes + startSearch.expansions() + goalSearch.expansions() - cellsBefore;
+    lastNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  /**
+   * sector nodes and cells expanded by the last query
+   */
+  long lastExpansions() {
+    return lastExpansions;
+  }
+
+  /**
+   * wall clock duration of the last query in nanoseconds
+   */
+  long lastNanos() {
+    return lastNanos;
+  }
+
+  private void transition(int node, int across, int sector, int cost, int toX, int toY) {
+    if (graph.sectorOf(across) != sector && !grid.isWall(across) && graph.slot(across) >= 0) {
+      push(across, node, cost + 1, cost + 1 + estimate(across, toX, toY));
+    }
+  }
+
+  /**
+   * turn the abstract path ending in {@code last} into the first grid step from {@code from}
+   */
+  private int refine(int from, int last) {
+    // first node of the abstract path after from
+    int first = last;
+    while (parent[first] != from) {
+      first = parent[first];
+    }
+
+    if (first == from) {
+      // from is a node of the target's sector, the rest of the way is inside it
+      return goalSearch.next(from);
+    }
+    // across a transition the node is the step, otherwise it is reached inside the start sector
+    return graph.sectorOf(first) != graph.sectorOf(from) ? first : startSearch.firstStep(first);
+  }
+
+  private int estimate(int cell, int toX, int toY) {
+    return Math.abs(toX - cell % cols) + Math.abs(toY - cell / cols);
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // wrapped around, old stamps could collide with new ones
+      Arrays.fill(visitedGen, 0);
+      generation = 1;
+    }
+  }
+
+  private void push(int node, int from, int cost, int key) {
+    if (heapSize == heapKey.length) {
+      grow();
+    }
+
+    int k = heapSize++;
+    while (k > 0) {
+      int p = (k - 1) >>> 1;
+      if (key >= heapKey[p]) {
+        break;
+      }
+      move(p, k);
+      k = p;
+    }
+
+    heapKey[k] = key;
+    heapNode[k] = node;
+    heapParent[k] = from;
+    heapCost[k] = cost;
+  }
+
+  private void pop() {
+    int n = --heapSize;
+    if (n == 0) {
+      return;
+    }
+
+    int key = heapKey[n];
+    int node = heapNode[n];
+    int from = heapParent[n];
+    int cost = heapCost[n];
+
+    int k = 0;
+    int half = n >>> 1;
+    while (k < half) {
+      int child = 2 * k + 1;
+      int right = child + 1;
+      if (right < n && heapKey[child] > heapKey[right]) {
+        child = right;
+      }
+      if (key <= heapKey[child]) {
+        break;
+      }
+      move(child, k);
+      k = child;
+    }
+
+    heapKey[k] = key;
+    heapNode[k] = node;
+    heapParent[k] = from;
+    heapCost[k] = cost;
+  }
+
+  private void move(int src, int dst) {
+    heapKey[dst] = heapKey[src];
+    heapNode[dst] = heapNode[src];
+    heapParent[dst] = heapParent[src];
+    heapCost[dst] = heapCost[src];
+  }
+
+  private void grow() {
+    int capacity = heapKey.length * 2;
+    heapKey = Arrays.copyOf(heapKey, capacity);
+    heapNode = Arrays.copyOf(heapNode, capacity);
+    heapParent = Arrays.copyOf(heapParent, capacity);
+    heapCost = Arrays.copyOf(heapCost, capacity);
+  }
+}
@@ -0,0 +1,285 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Jump point search for the uniform cost 4-connected grid.
+ * <br/>
+ * Among equally short paths only canonical ones are followed: horizontal runs may turn vertical at
+ * any cell, vertical runs only turn where the cell beside the previous one is a wall, so the turn
+ * could not have been taken earlier. Straight runs are scanned without touching the open set and only
+ * cells where a canonical path can turn, the jump points, are pushed. In the open areas of the
+ * generated maps that leaves a small fraction of the cells A* puts in its heap.
+ * <br/>
+ * Jump points are expanded in every direction but the one they were reached from, so closing a cell
+ * on its first pop loses no path and the result is optimal with the Manhattan heuristic.
+ * <br/>
+ * Not thread safe, use one instance per thread.
+ */
+final class JumpPointSearch implements PathFinder {
+  private static final int INITIAL_HEAP_CAPACITY = 256;
+  // directions, in the neighbour order of AStarSearch, a direction xor 1 is its opposite
+  private static final int DOWN = 0;
+  private static final int UP = 1;
+  private static final int RIGHT = 2;
+  private static final int LEFT = 3;
+  private static final int NONE = -1;
+
+  // grid of the current query
+  private SearchGrid grid;
+  private int cols;
+  private int rows;
+  private int to;
+
+  private final int[] visitedGen;
+  private final int[] parent;
+  private int generation;
+
+  // open set, one slot per heap entry
+  private int[] heapKey;
+  private int[] heapCell;
+  private int[] heapParent;
+  private int[] heapCost;
+  private int[] heapDir;
+  private int heapSize;
+
+  private long lastExpansions;
+  private long lastNanos;
+
+  /**
+   * @param capacity largest number of cells of any grid searched
+   */
+  JumpPointSearch(int capacity) {
+    visitedGen = new int[capacity];
+    parent = new int[capacity];
+
+    heapKey = new int[INITIAL_HEAP_CAPACITY];
+    heapCell = new int[INITIAL_HEAP_CAPACITY];
+    heapParent = new int[INITIAL_HEAP_CAPACITY];
+    heapCost = new int[INITIAL_HEAP_CAPACITY];
+    heapDir = new int[INITIAL_HEAP_CAPACITY];
+  }
+
+  @Override
+  public int firstStep(SearchGrid grid, int from, int to) {
+    if (grid.rows() * grid.cols() > visitedGen.length) {
+      throw new IllegalArgumentException("grid larger than search capacity");
+    }
+
+    long start = System.nanoTime();
+    this.grid = grid;
+    cols = grid.cols();
+    rows = grid.rows();
+    this.to = to;
+    long expansions = 0;
+
+    nextGeneration();
+    heapSize = 0;
+    push(from, -1, 0, NONE);
+
+    int result = -1;
+    while (heapSize > 0) {
+      int current = heapCell[0];
+      int currentParent = heapParent[0];
+      int cost = heapCost[0];
+      int dir = heapDir[0];
+      pop();
+
+      if (visitedGen[current] == generation) {
+        continue;
+      }
+      visitedGen[current] = generation;
+      parent[current] = currentParent;
+      expansions++;
+
+      if (current == to) {
+        result = traceFirstStep(from, to);
+        break;
+      }
+
+      for (int next = DOWN; next <= LEFT; next++) {
+        if (dir != NONE && next == (dir ^ 1)) {
+          continue;
+        }
+
+        int jumpPoint = next <= UP ? jumpVertical(current, next) : jumpHorizontal(current, next);
+        if (jumpPoint >= 0 && visitedGen[jumpPoint] != generation) {
+          push(jumpPoint, current, cost + distance(current, jumpPoint), next);
+        }
+      }
+    }
+
+    lastExpansions = expansions;
+    lastNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  /**
+   * number of jump points expanded by the last query
+   */
+  @Override
+  public long lastExpansions() {
+    return lastExpansions;
+  }
+
+  @Override
+  public long lastNanos() {
+    return lastNanos;
+  }
+
+  /**
+   * scan from {@code cell} up or down until the target or a cell with a forced horizontal turn
+   * @return that cell, -1 if a wall or the edge comes first
+   */
+  private int jumpVertical(int cell, int dir) {
+    int step = dir == DOWN ? cols : -cols;
+    int x = cell % cols;
+    int y = cell / cols;
+    int dy = dir == DOWN ? 1 : -1;
+
+    while (true) {
+      y += dy;
+      if (y < 0 || y >= rows || grid.isWall(cell + step)) {
+        return -1;
+      }
+      cell += step;
+
+      if (cell == to) {
+        return cell;
+      }
+      // a turn is forced where the cell beside the previous one is blocked
+      if (x + 1 < cols && !grid.isWall(cell + 1) && grid.isWall(cell - step + 1)) {
+        return cell;
+      }
+      if (x > 0 && !grid.isWall(cell - 1) && grid.isWall(cell - step - 1)) {
+        return cell;
+      }
+    }
+  }
+
+  /**
+   * scan from {@code cell} left or right until the target or a cell a vertical scan leads on from
+   * @return that cell, -1 if a wall or the edge comes first
+   */
+  private int jumpHorizontal(int cell, int dir) {
+    int step = dir == RIGHT ? 1 : -1;
+    int x = cell % cols;
+
+    while (true) {
+      x += step;
+      if (x < 0 || x >= cols || grid.isWall(cell + step)) {
+        return -1;
+      }
+      cell += step;
+
+      if (cell == to || jumpVertical(cell, DOWN) >= 0 || jumpVertical(cell, UP) >= 0) {
+        return cell;
+      }
+    }
+  }
+
+  private int traceFirstStep(int from, int to) {
+    if (to == from) {
+      return from;
+    }
+
+    int current = to;
+    while (parent[current] != from) {
+      current = parent[current];
+    }
+
+    // jump points are joined by straight runs
+    if (current / cols == from / cols) {
+      return current > from ? from + 1 : from - 1;
+    }
+    return current > from ? from + cols : from - cols;
+  }
+
+  private int distance(int a, int b) {
+    return Math.abs(a % cols - b % cols) + Math.abs(a / cols - b / cols);
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      // wrapped around, old stamps could collide with new ones
+      Arrays.fill(visitedGen, 0);
+      generation = 1;
+    }
+  }
+
+  private void push(int cell, int from, int cost, int dir) {
+    if (heapSize == heapKey.length) {
+      grow();
+    }
+
+    int key = cost + distance(cell, to);
+
+    int k = heapSize++;
+    while (k > 0) {
+      int p = (k - 1) >>> 1;
+      if (key >= heapKey[p]) {
+        break;
+      }
+      move(p, k);
+      k = p;
+    }
+
+    heapKey[k] = key;
+    heapCell[k] = cell;
+    heapParent[k] = from;
+    heapCost[k] = cost;
+    heapDir[k] = dir;
+  }
+
+  private void pop() {
+    int n = --heapSize;
+    if (n == 0) {
+      return;
+    }
+
+    int key = heapKey[n];
+    int cell = heapCell[n];
+    int from = heapParent[n];
+    int cost = heapCost[n];
+    int dir = heapDir[n];
+
+    int k = 0;
+    int half = n >>> 1;
+    while (k < half) {
+      int child = 2 * k + 1;
+      int right = child + 1;
+      if (right < n && heapKey[child] > heapKey[right]) {
+        child = right;
+      }
+      if (key <= heapKey[child]) {
+        break;
+      }
+      move(child, k);
+      k = child;
+    }
+
+    heapKey[k] = key;
+    heapCell[k] = cell;
+    heapParent[k] = from;
+    heapCost[k] = cost;
+    heapDir[k] = dir;
+  }
+
+  private void move(int src, int dst) {
+    heapKey[dst] = heapKey[src];
+    heapCell[dst] = heapCell[src];
+    heapParent[dst] = heapParent[src];
+    heapCost[dst] = heapCost[src];
+    heapDir[dst] = heapDir[src];
+  }
+
+  private void grow() {
+    int capacity = heapKey.length * 2;
+    heapKey = Arrays.copyOf(heapKey, capacity);
+    heapCell = Arrays.copyOf(heapCell, capacity);
+    heapParent = Arrays.copyOf(heapParent, capacity);
+    heapCost = Arrays.copyOf(heapCost, capacity);
+    heapDir = Arrays.copyOf(heapDir, capacity);
+  }
+}
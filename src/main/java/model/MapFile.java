@@ -0,0 +1,257 @@
+package model;
+
+import model.vector.GridVec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A map saved to disk, opened through a read only memory mapping.
+ * <br/>
+ * Layout, little endian with every section 8 byte aligned so it can be read as longs:
+ * <pre>
+ * header  magic:int version:int rows:int cols:int spawnCells:long reserved:long
+ * walls   one bit per cell, row major, as in GridMap
+ * spawn   one bit per cell of the largest connected area, any two of these cells reach each other
+ * </pre>
+ * The spawn area is found once when saving, so starting a game on a saved map costs a bulk copy of
+ * the wall bits and nothing else. Spawn bits are read straight from the mapping, so maps opened by
+ * several games share the page cache.
+ */
+public final class MapFile {
+  private static final int MAGIC = 0x4d425445; // "ETBM" read as little endian
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 32;
+
+  private final ByteBuffer buffer;
+  private final int rows;
+  private final int cols;
+  private final long spawnCells;
+  private final int spawnOffset;
+
+  private MapFile(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException("not a map file");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("unsupported map version " + buffer.getInt(4));
+    }
+
+    rows = buffer.getInt(8);
+    cols = buffer.getInt(12);
+    spawnCells = buffer.getLong(16);
+    if (rows < GridMap.MIN_MAP_SIZE || rows > GridMap.MAX_MAP_SIZE || cols < GridMap.MIN_MAP_SIZE
+        || cols > GridMap.MAX_MAP_SIZE) {
+      throw new IOException("invalid map size " + cols + "x" + rows);
+    }
+
+    int words = GridMap.words(rows * cols);
+    spawnOffset = HEADER_BYTES + words * 8;
+    if (buffer.limit() != spawnOffset + words * 8) {
+      throw new IOException("truncated map file");
+    }
+    // rays check no bounds, only the outer ring stops them
+    if (!hasOuterWall()) {
+      throw new IOException("map has no outer wall");
+    }
+  }
+
+  private boolean hasOuterWall() {
+    for (int x = 0; x < cols; x++) {
+      if (!isWall(x) || !isWall((rows - 1) * cols + x)) {
+        return false;
+      }
+    }
+    for (int y = 1; y < rows - 1; y++) {
+      if (!isWall(y * cols) || !isWall(y * cols + cols - 1)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isWall(int i) {
+    return (buffer.getLong(HEADER_BYTES + (i >>> 6) * 8) & 1L << i) != 0;
+  }
+
+  /**
+   * map a saved map into memory
+   */
+  public static MapFile open(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, READ)) {
+      // the mapping stays valid after the channel is closed
+      return new MapFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int cols() {
+    return cols;
+  }
+
+  /**
+   * number of cells in the spawn area
+   */
+  public long spawnCells() {
+    return spawnCells;
+  }
+
+  /**
+   * @return true if a player or block may start at given position, every such position reaches
+   * every other
+   */
+  public boolean isSpawn(GridVec pos) {
+    if (pos.x() < 0 || pos.x() >= cols || pos.y() < 0 || pos.y() >= rows) {
+      return false;
+    }
+
+    int i = pos.y() * cols + pos.x();
+    return (buffer.getLong(spawnOffset + (i >>> 6) * 8) & 1L << i) != 0;
+  }
+
+  /**
+   * copy the wall bits into {@code walls}, one bulk copy out of the mapping
+   */
+  void copyWalls(long[] walls) {
+    buffer.slice(HEADER_BYTES, walls.length * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(walls);
+  }
+
+  /**
+   * save walls in the map format, working out the spawn area on the way
+   */
+  static void write(Path path, int rows, int cols, long[] walls) throws IOException {
+    int words = GridMap.words(rows * cols);
+    var spawn = largestArea(rows, cols, walls);
+    long spawnCells = 0;
+    for (long word : spawn) {
+      spawnCells += Long.bitCount(word);
+    }
+
+    try (var channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+      var mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 2L * words * 8);
+      var out = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      out.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putLong(spawnCells).putLong(0);
+      out.asLongBuffer().put(walls, 0, words).put(spawn);
+      mapped.force();
+    }
+  }
+
+  /**
+   * @return bits of the largest 4-connected area of empty cells
+   */
+  private static long[] largestArea(int rows, int cols, long[] walls) {
+    int cells = rows * cols;
+    var seen = new long[GridMap.words(cells)];
+    var queue = new int[cells];
+    int bestStart = -1;
+    int bestSize = 0;
+
+    for (int start = 0; start < cells; start++) {
+      if (isSet(walls, start) || isSet(seen, start)) {
+        continue;
+      }
+
+      int size = flood(rows, cols, walls, seen, queue, start);
+      if (size > bestSize) {
+        bestSize = size;
+        bestStart = start;
+      }
+    }
+
+    var area = new long[seen.length];
+    if (bestStart >= 0) {
+      flood(rows, cols, walls, area, queue, bestStart);
+    }
+    return area;
+  }
+
+  /**
+   * mark every empty cell reachable from {@code start} in {@code marks}
+   * @return number of cells marked
+   */
+  private static int flood(int rows, int cols, long[] walls, long[] marks, int[] queue, int start) {
+    int head = 0;
+    int tail = 0;
+    marks[start >>> 6] |= 1L << start;
+    queue[tail++] = start;
+
+    while (head < tail) {
+      int cell = queue[head++];
+      int x = cell % cols;
+      int y = cell / cols;
+      if (y + 1 < rows) {
+        tail = visit(walls, marks, queue, tail, cell + cols);
+      }
+      if (y > 0) {
+        tail = visit(walls, marks, queue, tail, cell - cols);
+      }
+      if (x + 1 < cols) {
+        tail = visit(walls, marks, queue, tail, cell + 1);
+      }
+      if (x > 0) {
+        tail = visit(walls, marks, queue, tail, cell - 1);
+      }
+    }
+
+    return tail;
+  }
+
+  private static int visit(long[] walls, long[] marks, int[] queue, int tail, int cell) {
+    if (!isSet(walls, cell) && !isSet(marks, cell)) {
+      marks[cell >>> 6] |= 1L << cell;
+      queue[tail++] = cell;
+    }
+    return tail;
+  }
+
+  private static boolean isSet(long[] bits, int i) {
+    return (bits[i >>> 6] & 1L << i) != 0;
+  }
+
+  /**
+   * generate a random square map and save it
+   * @param size must be in range {@code GridMap.MIN_MAP_SIZE} to {@code GridMap.MAX_MAP_SIZE}
+   * @param wallRate chance of each cell inside the outer ring being a wall, 0.3 in normal games
+   */
+  public static void generate(Path path, int size, long seed, double wallRate) throws IOException {
+    if (size < GridMap.MIN_MAP_SIZE || size > GridMap.MAX_MAP_SIZE) {
+      throw new IllegalArgumentException("invalid map size");
+    }
+
+    var center = new GridVec(size / 2, size / 2);
+    new GridMap(size, List.of(), center, new Random(seed), wallRate).save(path);
+  }
+
+  /**
+   * Arguments: file, map size, optionally a seed and the wall rate. Generates a random map and saves it
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("usage: MapFile file size [seed [wallRate]]");
+    }
+
+    int size = Integer.parseInt(args[1]);
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+    double wallRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.3;
+    generate(Path.of(args[0]), size, seed, wallRate);
+
+    var saved = open(Path.of(args[0]));
+    System.out.println("saved " + size + "x" + size + " map with seed " + seed + ", " + saved.spawnCells()
+        + " spawn cells");
+  }
+}
@@ -0,0 +1,230 @@
+package model;
+
+import model.vector.GridVec;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the walls of a map in a single pass, with every block guaranteed to reach the player.
+ * <br/>
+ * Walls are first scattered at random, then the component around the player is flood filled. Every
+ * block outside of it is joined to it by removing the fewest walls possible, found with a single BFS
+ * starting from the whole component at once, where stepping into a wall costs one and stepping into
+ * an empty cell is free. The outer wall ring is never touched. Everything is linear in the number of
+ * cells, no matter how many blocks there are or how unlucky the random walls are.
+ */
+final class MapGenerator {
+  private final int rows;
+  private final int cols;
+  private final long[] walls;
+
+  // cells known to be connected to the player
+  private final long[] connected;
+
+  // scratch space for the searches, each cell is enqueued at most once
+  private final long[] visited;
+  private final int[] queue;
+  private int[] nextQueue;
+  private int[] parent;
+  private int head;
+  private int tail;
+  private int nextTail;
+
+  private MapGenerator(long[] walls, int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+    this.walls = walls;
+
+    int words = GridMap.words(rows * cols);
+    connected = new long[words];
+    visited = new long[words];
+    queue = new int[rows * cols];
+  }
+
+  /**
+   * @param wallRate chance of each free grid cell being a wall
+   * @return wall bitset, row major
+   */
+  static long[] generate(int rows, int cols, double wallRate, Random random, GridVec playerPos, List<GridVec> blockPositions) {
+    var generator = new MapGenerator(new long[GridMap.words(rows * cols)], rows, cols);
+    generator.scatterWalls(wallRate, random, playerPos, blockPositions);
+    generator.connectAll(playerPos, blockPositions);
+
+    return generator.walls;
+  }
+
+  /**
+   * Carve existing walls until every block reaches the player, the outer ring of given walls must be
+   * solid and is left as it is
+   * @param walls wall bitset, row major, updated in place
+   */
+  static void connect(long[] walls, int rows, int cols, GridVec playerPos, List<GridVec> blockPositions) {
+    new MapGenerator(walls, rows, cols).connectAll(playerPos, blockPositions);
+  }
+
+  private void connectAll(GridVec playerPos, List<GridVec> blockPositions) {
+    floodConnected(playerPos.y() * cols + playerPos.x());
+
+    // blocks left to join, the same cell may be listed twice
+    var targets = new long[connected.length];
+    int remaining = 0;
+    for (var blockPos : blockPositions) {
+      int cell = blockPos.y() * cols + blockPos.x();
+      if (!isSet(connected, cell) && !isSet(targets, cell)) {
+        set(targets, cell);
+        remaining++;
+      }
+    }
+    if (remaining > 0) {
+      carveConnections(targets, remaining);
+    }
+  }
+
+  private void scatterWalls(double wallRate, Random random, GridVec playerPos, List<GridVec> blockPositions) {
+    // reserved cells, the 3x3 starting area is tested by range and blocks by bit, both O(1)
+    var reserved = new long[walls.length];
+    for (var blockPos : blockPositions) {
+      set(reserved, blockPos.y() * cols + blockPos.x());
+    }
+    int px = playerPos.x();
+    int py = playerPos.y();
+
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        int idx = i * cols + j;
+        boolean wall;
+        if (i == 0 || i == rows - 1 || j == 0 || j == cols - 1) {
+          wall = true;
+        } else {
+          boolean startArea = Math.abs(i - py) <= 1 && Math.abs(j - px) <= 1;
+          wall = random.nextDouble() < wallRate && !startArea && !isSet(reserved, idx);
+        }
+
+        if (wall) {
+          set(walls, idx);
+        }
+      }
+    }
+  }
+
+  /**
+   * add every empty cell reachable from {@code start} to the connected set, the outer wall ring keeps
+   * the flood inside the map
+   */
+  private void floodConnected(int start) {
+    head = 0;
+    tail = 0;
+    set(connected, start);
+    queue[tail++] = start;
+
+    while (head < tail) {
+      int cell = queue[head++];
+      flood(cell + cols);
+      flood(cell - cols);
+      flood(cell + 1);
+      flood(cell - 1);
+    }
+  }
+
+  private void flood(int cell) {
+    if (!isSet(walls, cell) && !isSet(connected, cell)) {
+      set(connected, cell);
+      queue[tail++] = cell;
+    }
+  }
+
+  /**
+   * remove the fewest walls needed to join every target cell with the connected set
+   * @param remaining number of target cells
+   */
+  private void carveConnections(long[] targets, int remaining) {
+    parent = new int[rows * cols];
+    nextQueue = new int[rows * cols];
+
+    // layered BFS, layer n holds cells needing n walls removed. Empty cells stay in the current layer
+    // and walls go to the next, so the first time a cell is enqueued is always at its lowest cost.
+    // Every connected cell starts in layer 0
+    head = 0;
+    tail = 0;
+    nextTail = 0;
+    for (int w = 0; w < connected.length; w++) {
+      visited[w] = connected[w];
+      for (long bits = connected[w]; bits != 0; bits &= bits - 1) {
+        int cell = w << 6 | Long.numberOfTrailingZeros(bits);
+        parent[cell] = -1;
+        queue[tail++] = cell;
+      }
+    }
+
+    int[] current = queue;
+    while (head < tail) {
+      int cell = current[head++];
+      if (isSet(targets, cell)) {
+        carve(cell);
+        if (--remaining == 0) {
+          return;
+        }
+      }
+
+      int x = cell % cols;
+      int y = cell / cols;
+      reach(current, cell, cell + cols, y + 1 < rows - 1);
+      reach(current, cell, cell - cols, y - 1 > 0);
+      reach(current, cell, cell + 1, x + 1 < cols - 1);
+      reach(current, cell, cell - 1, x - 1 > 0);
+
+      if (head == tail) {
+        // current layer exhausted, move on to the cells behind one more wall
+        int[] done = current;
+        current = nextQueue;
+        nextQueue = done;
+        head = 0;
+        tail = nextTail;
+        nextTail = 0;
+      }
+    }
+
+    throw new IllegalStateException("map has no room to connect blocks and player");
+  }
+
+  /**
+   * @param inside false for cells on the outer ring, which is never carved
+   */
+  private void reach(int[] current, int from, int cell, boolean inside) {
+    if (!inside || isSet(visited, cell)) {
+      return;
+    }
+
+    set(visited, cell);
+    parent[cell] = from;
+    if (isSet(walls, cell)) {
+      nextQueue[nextTail++] = cell;
+    } else {
+      current[tail++] = cell;
+    }
+  }
+
+  /**
+   * clear the walls on the way back from {@code from} to the connected set, which it then joins.
+   * Ways shared with an earlier target are only walked once
+   */
+  private void carve(int from) {
+    for (int cell = from; cell != -1 && !isSet(connected, cell); cell = parent[cell]) {
+      clear(walls, cell);
+      set(connected, cell);
+    }
+  }
+
+  private static boolean isSet(long[] bits, int i) {
+    return (bits[i >>> 6] & 1L << i) != 0;
+  }
+
+  private static void set(long[] bits, int i) {
+    bits[i >>> 6] |= 1L << i;
+  }
+
+  private static void clear(long[] bits, int i) {
+    bits[i >>> 6] &= ~(1L << i);
+  }
+}
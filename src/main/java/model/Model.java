@@ -3,60 +3,239 @@ package model;
 import controller.ControllableModel;
 import model.vector.GridVec;
 import model.vector.Vec2D;
+import view.ViewableGrid;
 import view.ViewableModel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
 
 public class Model implements ViewableModel, ControllableModel {
+  // player positions tried before giving up on a game, each gets a capped number of block attempts
+  private static final int MAX_PLAYER_SPAWNS = 1000;
+  // low bits of a conflict key hold the block's index, the bits above its cell
+  private static final int BLOCK_BITS = 20;
+  private static final long BLOCK_MASK = (1L << BLOCK_BITS) - 1;
+
   private long gameStart;
 
   private GameState gameState;
   private Vec2D playerPos;
   private Vec2D playerDir;
   private Vec2D viewPort;
-  private GridVec blockPos;
+  private List<GridVec> blockPositions;
 
-  private GridMap map;
+  private WorldMap map;
   private final int mapSize;
+  private final boolean chunked;
+  private final MapFile mapFile; // null unless playing a saved map
+  private final PathMode pathMode;
+  private final int blockCount;
+  private final Random rand;
+  private final LongSupplier clock;
+
+  private boolean parallelPlanning = true;
+  // scratch space of resolveConflicts, one key per block
+  private long[] conflictKeys = new long[0];
 
   private int score;
+  // bumped by every change to what can be seen, see version()
+  private long version;
 
   /**
    * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
    */
   public Model(int mapSize) {
-    if (mapSize < GridMap.MIN_MAP_SIZE || mapSize > GridMap.MAX_MAP_SIZE) {
+    this(mapSize, PathMode.A_STAR);
+  }
+
+  /**
+   * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
+   * @param pathMode how the block finds its path to the player
+   */
+  public Model(int mapSize, PathMode pathMode) {
+    this(mapSize, pathMode, 1);
+  }
+
+  /**
+   * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
+   * @param pathMode how the blocks find their path to the player
+   * @param blockCount number of blocks chasing the player, at least 1
+   */
+  public Model(int mapSize, PathMode pathMode, int blockCount) {
+    this(mapSize, false, null, pathMode, blockCount, new Random(), System::currentTimeMillis);
+  }
+
+  /**
+   * Model where every game played is decided by {@code seed}, for reproducible runs
+   * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
+   * @param pathMode how the blocks find their path to the player
+   * @param blockCount number of blocks chasing the player, at least 1
+   */
+  public Model(int mapSize, PathMode pathMode, int blockCount, long seed) {
+    this(mapSize, false, null, pathMode, blockCount, new Random(seed), System::currentTimeMillis);
+  }
+
+  /**
+   * Seeded model running on its own clock, lets headless simulations run faster than real time
+   * @param mapSize must be in range {@code MIN_MAP_SIZE} to {@code MAX_MAP_SIZE}
+   * @param pathMode how the blocks find their path to the player
+   * @param blockCount number of blocks chasing the player, at least 1
+   * @param clock current time in milliseconds
+   */
+  public Model(int mapSize, PathMode pathMode, int blockCount, long seed, LongSupplier clock) {
+    this(mapSize, false, null, pathMode, blockCount, new Random(seed), clock);
+  }
+
+  /**
+   * Seeded model playing every game on a saved map, only where player and blocks start changes
+   * @param pathMode how the blocks find their path to the player
+   * @param blockCount number of blocks chasing the player, at least 1
+   * @param clock current time in milliseconds
+   */
+  public Model(MapFile mapFile, PathMode pathMode, int blockCount, long seed, LongSupplier clock) {
+    this(Math.max(mapFile.rows(), mapFile.cols()), false, mapFile, pathMode, blockCount, new Random(seed), clock);
+  }
+
+  private Model(int mapSize, boolean chunked, MapFile mapFile, PathMode pathMode, int blockCount, Random rand,
+                LongSupplier clock) {
+    if (!chunked && mapFile == null && (mapSize < GridMap.MIN_MAP_SIZE || mapSize > GridMap.MAX_MAP_SIZE)) {
       throw new IllegalArgumentException("Invalid map size");
     }
+    if (pathMode == null || clock == null) {
+      throw new NullPointerException();
+    }
+    long room = mapFile != null ? mapFile.spawnCells() : (long) mapSize * mapSize;
+    if (blockCount < 1 || blockCount > room / 16 || blockCount > BLOCK_MASK) {
+      throw new IllegalArgumentException("Invalid block count");
+    }
 
     this.mapSize = mapSize;
+    this.chunked = chunked;
+    this.mapFile = mapFile;
+    this.pathMode = pathMode;
+    this.blockCount = blockCount;
+    this.rand = rand;
+    this.clock = clock;
     startNewGame();
   }
 
+  /**
+   * Model on a map of {@code ChunkedGridMap.WORLD_SIZE} cells per side, generated chunk by chunk as
+   * it is explored
+   * @param pathMode how the blocks find their path to the player
+   * @param blockCount number of blocks chasing the player, at least 1
+   */
+  public static Model unbounded(PathMode pathMode, int blockCount) {
+    return new Model(ChunkedGridMap.WORLD_SIZE, true, null, pathMode, blockCount, new Random(), System::currentTimeMillis);
+  }
+
+  /**
+   * Seeded model on an unbounded map, running on its own clock
+   * @param pathMode how the blocks find their path to the player
+   * @param blockCount number of blocks chasing the player, at least 1
+   * @param clock current time in milliseconds
+   */
+  public static Model unbounded(PathMode pathMode, int blockCount, long seed, LongSupplier clock) {
+    return new Model(ChunkedGridMap.WORLD_SIZE, true, null, pathMode, blockCount, new Random(seed), clock);
+  }
+
   @Override
   public int checkGridCell(GridVec pos) throws IndexOutOfBoundsException {
-    if (pos == null) {
+    // the map does the null and bounds checking
+    return map.get(pos);
+  }
+
+  @Override
+  public boolean isSolid(int x, int y) {
+    return map.isSolid(x, y);
+  }
+
+  @Override
+  public void moveBlocks(List<GridVec> steps) throws IndexOutOfBoundsException {
+    if (steps == null) {
       throw new NullPointerException();
     }
-    if (!map.validPos(pos)) {
-      throw new IndexOutOfBoundsException();
+    if (steps.size() != blockPositions.size()) {
+      throw new IllegalArgumentException("one step per block needed");
     }
 
-    return map.get(pos);
+    var next = new GridVec[steps.size()];
+    for (int i = 0; i < next.length; i++) {
+      var step = steps.get(i);
+      if (step != null && !map.validPos(step)) {
+        throw new IndexOutOfBoundsException();
+      }
+      next[i] = step != null ? step : blockPositions.get(i);
+    }
+
+    resolveConflicts(next);
+
+    var moved = List.of(next);
+    if (!moved.equals(blockPositions)) {
+      version++;
+    }
+    map.moveBlocks(blockPositions, moved);
+    blockPositions = moved;
   }
 
-  @Override
-  public void setBlockPos(GridVec pos) throws IndexOutOfBoundsException {
-    if (pos == null) {
-      throw new NullPointerException();
+  /**
+   * Makes sure no two blocks end up in the same cell. When two blocks want the same cell the one with
+   * the lowest index gets it and the other stays put, staying put can in turn block someone else,
+   * so this repeats until nothing changes. Every round sends at least one block back for good, so
+   * it finishes after at most one round per block.
+   * <br/>
+   * Blocks wanting the same cell are found by sorting keys of cell and index, which allocates nothing
+   * and does not depend on the size of the map.
+   */
+  private void resolveConflicts(GridVec[] next) {
+    int n = next.length;
+    if (conflictKeys.length < n) {
+      conflictKeys = new long[n];
     }
-    if (!map.validPos(pos)) {
-      throw new IndexOutOfBoundsException();
+    var keys = conflictKeys;
+
+    while (true) {
+      for (int i = 0; i < n; i++) {
+        // coordinates stay below 2^20 on every map, so cell and index fit into one positive long
+        keys[i] = ((long) next[i].y() << 20 | next[i].x()) << BLOCK_BITS | i;
+      }
+      Arrays.sort(keys, 0, n);
+
+      // the lowest block wanting a cell that a block before it wants too, and the first one wanting it
+      int loser = -1;
+      int owner = -1;
+      for (int k = 1; k < n; k++) {
+        if (keys[k] >>> BLOCK_BITS == keys[k - 1] >>> BLOCK_BITS) {
+          int i = (int) (keys[k] & BLOCK_MASK);
+          if (loser < 0 || i < loser) {
+            loser = i;
+            owner = (int) (keys[k - 1] & BLOCK_MASK);
+          }
+        }
+      }
+      if (loser < 0) {
+        return;
+      }
+
+      var current = blockPositions.get(loser);
+      if (!next[loser].equals(current)) {
+        next[loser] = current;
+      } else {
+        // loser is staying put, so whoever moved into its cell has to stay as well
+        next[owner] = blockPositions.get(owner);
+      }
     }
+  }
 
-    map.set(blockPos, 0);
-    blockPos = pos;
-    map.set(blockPos, 2);
+  @Override
+  public ViewableGrid getGrid() {
+    return map;
   }
 
   @Override
@@ -74,7 +253,10 @@ public class Model implements ViewableModel, ControllableModel {
       throw new IndexOutOfBoundsException();
     }
 
-    playerPos = pos;
+    if (!pos.equals(playerPos)) {
+      playerPos = pos;
+      version++;
+    }
   }
 
   @Override
@@ -91,11 +273,17 @@ public class Model implements ViewableModel, ControllableModel {
   public void rotatePlayerDir(double theta) {
     playerDir = playerDir.rotate(theta);
     viewPort = viewPort.rotate(theta);
+    version++;
   }
 
   @Override
-  public GridVec getBlockPos() {
-    return blockPos;
+  public List<GridVec> getBlockPositions() {
+    return blockPositions;
+  }
+
+  @Override
+  public long version() {
+    return version;
   }
 
   @Override
@@ -106,18 +294,51 @@ public class Model implements ViewableModel, ControllableModel {
   @Override
   public void setGameOver() {
     gameState = GameState.GAME_OVER;
-    map.set(blockPos, 0);
+    for (var blockPos : blockPositions) {
+      map.clearBlock(blockPos);
+    }
     score = (int) (timeSinceStart() / 1000);
+    version++;
   }
 
   @Override
   public long timeSinceStart() {
-    return System.currentTimeMillis() - gameStart;
+    return clock.getAsLong() - gameStart;
   }
 
   @Override
-  public GridVec findBlockPath() {
-    return map.findPath(blockPos, new GridVec(playerPos));
+  public List<GridVec> findBlockPaths() {
+    var target = new GridVec(playerPos);
+    var steps = new GridVec[blockPositions.size()];
+
+    switch (pathMode) {
+      // independent searches, spread over the common fork join pool unless planning is serial
+      case A_STAR, BFS, JPS -> blockIndices(steps.length)
+          .forEach(i -> steps[i] = map.findPath(blockPositions.get(i), target, pathMode));
+      case HPA_STAR -> blockIndices(steps.length)
+          .forEach(i -> steps[i] = map.findHierarchicalPath(blockPositions.get(i), target));
+      // the shared field is expanded once, after that each step is O(1) so it is not worth forking
+      case FLOW_FIELD -> {
+        for (int i = 0; i < steps.length; i++) {
+          steps[i] = map.findFlowStep(blockPositions.get(i), target);
+        }
+      }
+    }
+
+    return Collections.unmodifiableList(Arrays.asList(steps));
+  }
+
+  /**
+   * Plan block paths on the calling thread only. By default independent searches are spread over the
+   * common fork join pool, which a caller running many models on one thread may not want to share.
+   */
+  public void setParallelPlanning(boolean parallel) {
+    parallelPlanning = parallel;
+  }
+
+  private IntStream blockIndices(int count) {
+    var indices = IntStream.range(0, count);
+    return parallelPlanning ? indices.parallel() : indices;
   }
 
   @Override
@@ -125,22 +346,72 @@ public class Model implements ViewableModel, ControllableModel {
     playerDir = new Vec2D(0, 1);
     viewPort = new Vec2D(0.7, 0);
 
-    var rand = new Random();
+    int cols = mapFile != null ? mapFile.cols() : mapSize;
+    int rows = mapFile != null ? mapFile.rows() : mapSize;
+    GridVec discretePlayerPos;
+    List<GridVec> positions;
+    int spawnsLeft = MAX_PLAYER_SPAWNS;
+    do {
+      if (spawnsLeft-- == 0) {
+        throw new IllegalStateException("no room to spawn " + blockCount + " blocks");
+      }
+      discretePlayerPos = new GridVec(rand.nextInt(2, cols - 2), rand.nextInt(2, rows - 2));
+      positions = canSpawn(discretePlayerPos) ? spawnBlocks(discretePlayerPos, cols, rows) : null;
+    } while (positions == null);
+
+    playerPos = new Vec2D(discretePlayerPos.x() + 0.5, discretePlayerPos.y() + 0.5);
+    blockPositions = positions;
 
-    playerPos = new Vec2D(rand.nextInt(2, mapSize - 2) + 0.5, rand.nextInt(2, mapSize - 2) + 0.5);
-    var discretePlayerPos = new GridVec(playerPos);
+    if (chunked) {
+      map = new ChunkedGridMap(rand.nextLong(), blockPositions, discretePlayerPos);
+    } else if (mapFile != null) {
+      map = new GridMap(mapFile, blockPositions);
+    } else {
+      map = new GridMap(mapSize, blockPositions, discretePlayerPos, rand);
+    }
+    gameState = GameState.ACTIVE;
+    version++;
 
-    // making sure block is not spawned too close nor too far from player
+    gameStart = clock.getAsLong();
+  }
+
+  /**
+   * generated maps are carved around whatever was picked, saved maps only allow their spawn area
+   */
+  private boolean canSpawn(GridVec pos) {
+    return mapFile == null || mapFile.isSpawn(pos);
+  }
+
+  /**
+   * Pick block positions not too close nor too far from the player, the ring is widened when it
+   * would get crowded
+   * @return null if too few free cells were found around the player
+   */
+  private List<GridVec> spawnBlocks(GridVec playerPos, int cols, int rows) {
     int minStartDist = 5;
-    int maxStartDist = 10;
-    do {
-      blockPos = new GridVec(rand.nextInt(1, mapSize - 1), rand.nextInt(1, mapSize - 1));
-    } while (blockPos.distance(discretePlayerPos) < minStartDist || blockPos.distance(discretePlayerPos) > maxStartDist);
+    double maxStartDist = Math.max(10, Math.sqrt(minStartDist * minStartDist + 4. * blockCount / Math.PI));
+    // candidates are drawn from the square around the ring, not the whole map
+    int reach = (int) Math.ceil(maxStartDist);
+    int minX = Math.max(1, playerPos.x() - reach);
+    int maxX = Math.min(cols - 2, playerPos.x() + reach);
+    int minY = Math.max(1, playerPos.y() - reach);
+    int maxY = Math.min(rows - 2, playerPos.y() + reach);
 
-    map = new GridMap(mapSize, blockPos, discretePlayerPos);
-    gameState = GameState.ACTIVE;
+    var positions = new ArrayList<GridVec>(blockCount);
+    var taken = new HashSet<GridVec>(blockCount * 2);
+    int attemptsLeft = 64 * blockCount + 1024;
+    while (positions.size() < blockCount) {
+      if (attemptsLeft-- == 0) {
+        return null;
+      }
 
-    gameStart = System.currentTimeMillis();
+      var blockPos = new GridVec(rand.nextInt(minX, maxX + 1), rand.nextInt(minY, maxY + 1));
+      double dist = blockPos.distance(playerPos);
+      if (dist >= minStartDist && dist <= maxStartDist && canSpawn(blockPos) && taken.add(blockPos)) {
+        positions.add(blockPos);
+      }
+    }
+    return List.copyOf(positions);
   }
 
   @Override
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Strategy answering single path queries on a {@code SearchGrid}, one search per query.
+ * <br/>
+ * Engines keep scratch space between queries and are not thread safe, maps pool one per thread and
+ * pick the strategy by {@code PathMode}. Every strategy returns a step on some shortest path, which
+ * one may differ between strategies when several are equally short.
+ */
+interface PathFinder {
+  /**
+   * search from cell {@code from} to cell {@code to}
+   * @return index of the first step in the path, {@code from} if already there, -1 if there is no path
+   */
+  int firstStep(SearchGrid grid, int from, int to);
+
+  /**
+   * number of cells or jump points expanded by the last query
+   */
+  long lastExpansions();
+
+  /**
+   * wall clock duration of the last query in nanoseconds
+   */
+  long lastNanos();
+}
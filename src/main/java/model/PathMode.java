@@ -0,0 +1,37 @@
+package model;
+
+/**
+ * How "the block" finds its way to the player
+ */
+public enum PathMode {
+  // full A* search from the block on every move
+  A_STAR,
+  // step down a distance field rooted at the player, only rebuilt when the player changes cell
+  FLOW_FIELD,
+  // A* over sector entrances refined into a local step, cost independent of the map size
+  HPA_STAR,
+  // full breadth first search from the block on every move, the reference for the other searches
+  BFS,
+  // jump point search from the block on every move, only turning points enter the open set
+  JPS;
+
+  /**
+   * @return true if blocks run an independent {@code PathFinder} query per move
+   */
+  boolean searchesPerQuery() {
+    return this == A_STAR || this == BFS || this == JPS;
+  }
+
+  /**
+   * new engine for a mode searching per query
+   * @param capacity largest number of cells of any grid searched
+   */
+  PathFinder newFinder(int capacity) {
+    return switch (this) {
+      case A_STAR -> new AStarSearch(capacity, AStarSearch.Heuristic.EUCLIDEAN);
+      case BFS -> new BreadthFirstSearch(capacity);
+      case JPS -> new JumpPointSearch(capacity);
+      case FLOW_FIELD, HPA_STAR -> throw new IllegalStateException(this + " does not search per query");
+    };
+  }
+}
@@ -0,0 +1,15 @@
+package model;
+
+/**
+ * Rectangle of cells as seen by the path finders, cells are addressed by {@code y * cols() + x}
+ */
+interface SearchGrid {
+  int cols();
+
+  int rows();
+
+  /**
+   * unchecked wall test
+   */
+  boolean isWall(int i);
+}
@@ -0,0 +1,350 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Abstract graph for hierarchical path finding (HPA*), the grid cut into square sectors.
+ * <br/>
+ * Wherever two neighbouring sectors have open cells facing each other across their border, the run
+ * of open cells is an entrance. Each entrance gets a transition, one node on either side of the
+ * border, placed in the middle of narrow entrances and at both ends of wide ones. Both sides pick the
+ * same cells, since they scan the same border. Within a sector the BFS distance between every pair
+ * of its nodes is stored, so the abstract graph has sector local edges with those costs and edges of
+ * cost 1 across each transition.
+ * <br/>
+ * Changing a wall only affects the borders of its own sector, so {@code update} rebuilds that sector
+ * and its four neighbours, whose nodes on the shared borders may have moved.
+ * <br/>
+ * Reading is thread safe, {@code update} must not run during a search.
+ */
+final class SectorGraph {
+  static final int SECTOR_SIZE = 16;
+  static final int UNREACHABLE = Integer.MAX_VALUE;
+  // entrances at least this wide get a transition at each end
+  private static final int WIDE_ENTRANCE = 6;
+
+  private final SearchGrid grid;
+  private final int rows;
+  private final int cols;
+  private final int sectorRows;
+  private final int sectorCols;
+
+  // cells of the nodes of every sector, and the distances between them as a row major matrix
+  private final int[][] nodes;
+  private final int[][] distances;
+  // position of a cell in the node list of its sector, -1 if the cell is no node
+  private final int[] slot;
+
+  // rebuilds are single threaded, they share one search
+  private final SectorSearch search;
+  private int[] nodeBuffer = new int[4 * SECTOR_SIZE];
+
+  SectorGraph(SearchGrid grid) {
+    if (grid == null) {
+      throw new NullPointerException();
+    }
+
+    this.grid = grid;
+    rows = grid.rows();
+    cols = grid.cols();
+    sectorRows = (rows + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    sectorCols = (cols + SECTOR_SIZE - 1) / SECTOR_SIZE;
+
+    nodes = new int[sectorRows * sectorCols][];
+    distances = new int[nodes.length][];
+    slot = new int[rows * cols];
+    Arrays.fill(slot, -1);
+    search = new SectorSearch(this);
+
+    for (int sector = 0; sector < nodes.length; sector++) {
+      rebuild(sector);
+    }
+  }
+
+  SearchGrid grid() {
+    return grid;
+  }
+
+  int sectorOf(int cell) {
+    return cell / cols / SECTOR_SIZE * sectorCols + cell % cols / SECTOR_SIZE;
+  }
+
+  /**
+   * cells of the nodes in given sector, must not be modified
+   */
+  int[] nodes(int sector) {
+    return nodes[sector];
+  }
+
+  /**
+   * @return position of {@code cell} in the node list of its sector, -1 if it is no node
+   */
+  int slot(int cell) {
+    return slot[cell];
+  }
+
+  /**
+   * distance within the sector between its nodes {@code i} and {@code j}, or {@code UNREACHABLE}
+   */
+  int distance(int sector, int i, int j) {
+    return distances[sector][i * nodes[sector].length + j];
+  }
+
+  int sectorX0(int sector) {
+    return sector % sectorCols * SECTOR_SIZE;
+  }
+
+  int sectorY0(int sector) {
+    return sector / sectorCols * SECTOR_SIZE;
+  }
+
+  int sectorWidth(int sector) {
+    return Math.min(SECTOR_SIZE, cols - sectorX0(sector));
+  }
+
+  int sectorHeight(int sector) {
+    return Math.min(SECTOR_SIZE, rows - sectorY0(sector));
+  }
+
+  /**
+   * rebuild what a change of {@code cell} can affect, its sector and the four around it
+   */
+  void update(int cell) {
+    int sector = sectorOf(cell);
+    int sx = sector % sectorCols;
+    int sy = sector / sectorCols;
+
+    rebuild(sector);
+    if (sx > 0) {
+      rebuild(sector - 1);
+    }
+    if (sx + 1 < sectorCols) {
+      rebuild(sector + 1);
+    }
+    if (sy > 0) {
+      rebuild(sector - sectorCols);
+    }
+    if (sy + 1 < sectorRows) {
+      rebuild(sector + sectorCols);
+    }
+  }
+
+  private void rebuild(int sector) {
+    if (nodes[sector] != null) {
+      for (int cell : nodes[sector]) {
+        slot[cell] = -1;
+      }
+    }
+
+    int x0 = sectorX0(sector);
+    int y0 = sectorY0(sector);
+    int x1 = x0 + sectorWidth(sector) - 1;
+    int y1 = y0 + sectorHeight(sector) - 1;
+
+    // nodes on each border, the cells across are in the neighbouring sector
+    int count = 0;
+    if (x0 > 0) {
+      count = border(count, y0 * cols + x0, cols, -1, y1 - y0 + 1);
+    }
+    if (x1 < cols - 1) {
+      count = border(count, y0 * cols + x1, cols, 1, y1 - y0 + 1);
+    }
+    if (y0 > 0) {
+      count = border(count, y0 * cols + x0, 1, -cols, x1 - x0 + 1);
+    }
+    if (y1 < rows - 1) {
+      count = border(count, y1 * cols + x0, 1, cols, x1 - x0 + 1);
+    }
+
+    var sectorNodes = Arrays.copyOf(nodeBuffer, count);
+    for (int i = 0; i < count; i++) {
+      slot[sectorNodes[i]] = i;
+    }
+    nodes[sector] = sectorNodes;
+
+    var sectorDistances = new int[count * count];
+    for (int i = 0; i < count; i++) {
+      search.run(sector, sectorNodes[i]);
+      for (int j = 0; j < count; j++) {
+        sectorDistances[i * count + j] = search.distance(sectorNodes[j]);
+      }
+    }
+    distances[sector] = sectorDistances;
+  }
+
+  /**
+   * add the nodes of one border to {@code nodeBuffer}
+   * @param first first cell of the border inside the sector
+   * @param along step from one border cell to the next
+   * @param across step from a border cell to the cell facing it
+   * @return number of nodes in the buffer
+   */
+  private int border(int count, int first, int along, int across, int length) {
+    int runStart = -1;
+    for (int i = 0; i <= length; i++) {
+      int cell = first + i * along;
+      boolean open = i < length && !grid.isWall(cell) && !grid.isWall(cell + across);
+
+      if (open && runStart < 0) {
+        runStart = i;
+      } else if (!open && runStart >= 0) {
+        int runEnd = i - 1;
+        if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+          count = addNode(count, first + runStart * along);
+          count = addNode(count, first + runEnd * along);
+        } else {
+          count = addNode(count, first + (runStart + runEnd) / 2 * along);
+        }
+        runStart = -1;
+      }
+    }
+    return count;
+  }
+
+  private int addNode(int count, int cell) {
+    // corner cells sit on two borders
+    for (int i = 0; i < count; i++) {
+      if (nodeBuffer[i] == cell) {
+        return count;
+      }
+    }
+
+    if (count == nodeBuffer.length) {
+      nodeBuffer = Arrays.copyOf(nodeBuffer, count * 2);
+    }
+    nodeBuffer[count] = cell;
+    return count + 1;
+  }
+
+  /**
+   * BFS confined to one sector, with generation stamps so nothing is cleared between runs.
+   * Not thread safe, use one instance per thread.
+   */
+  static final class SectorSearch {
+    private final SectorGraph graph;
+    private final SearchGrid grid;
+    private final int cols;
+
+    private final int[] visitedGen = new int[SECTOR_SIZE * SECTOR_SIZE];
+    private final int[] dist = new int[SECTOR_SIZE * SECTOR_SIZE];
+    private final int[] parent = new int[SECTOR_SIZE * SECTOR_SIZE];
+    private final int[] queue = new int[SECTOR_SIZE * SECTOR_SIZE];
+    private int generation;
+
+    // sector of the last run
+    private int x0;
+    private int y0;
+    private int width;
+    private int height;
+    private int start;
+    private long expansions;
+
+    SectorSearch(SectorGraph graph) {
+      this.graph = graph;
+      this.grid = graph.grid;
+      this.cols = grid.cols();
+    }
+
+    /**
+     * distances from {@code startCell} to every cell of {@code sector} it can reach without leaving it
+     */
+    void run(int sector, int startCell) {
+      x0 = graph.sectorX0(sector);
+      y0 = graph.sectorY0(sector);
+      width = graph.sectorWidth(sector);
+      height = graph.sectorHeight(sector);
+
+      generation++;
+      if (generation == 0) {
+        // wrapped around, old stamps could collide with new ones
+        Arrays.fill(visitedGen, 0);
+        generation = 1;
+      }
+
+      start = local(startCell);
+      int head = 0;
+      int tail = 0;
+      visitedGen[start] = generation;
+      dist[start] = 0;
+      parent[start] = -1;
+      queue[tail++] = start;
+
+      while (head < tail) {
+        int current = queue[head++];
+        int x = current % SECTOR_SIZE;
+        int y = current / SECTOR_SIZE;
+        int nextDist = dist[current] + 1;
+        expansions++;
+
+        if (y + 1 < height) {
+          tail = visit(current, current + SECTOR_SIZE, nextDist, tail);
+        }
+        if (y > 0) {
+          tail = visit(current, current - SECTOR_SIZE, nextDist, tail);
+        }
+        if (x + 1 < width) {
+          tail = visit(current, current + 1, nextDist, tail);
+        }
+        if (x > 0) {
+          tail = visit(current, current - 1, nextDist, tail);
+        }
+      }
+    }
+
+    /**
+     * @return distance of the last run to {@code cell}, {@code UNREACHABLE} if outside or not reached
+     */
+    int distance(int cell) {
+      int i = local(cell);
+      return i >= 0 && visitedGen[i] == generation ? dist[i] : UNREACHABLE;
+    }
+
+    /**
+     * @return first cell on the way from the start of the last run to reachable {@code cell}
+     */
+    int firstStep(int cell) {
+      int i = local(cell);
+      if (i == start) {
+        return cell;
+      }
+      while (parent[i] != start) {
+        i = parent[i];
+      }
+      return global(i);
+    }
+
+    /**
+     * @return next cell on the way from reachable {@code cell} back to the start of the last run
+     */
+    int next(int cell) {
+      return global(parent[local(cell)]);
+    }
+
+    /**
+     * cells expanded since created
+     */
+    long expansions() {
+      return expansions;
+    }
+
+    private int visit(int from, int i, int d, int tail) {
+      if (visitedGen[i] != generation && !grid.isWall(global(i))) {
+        visitedGen[i] = generation;
+        dist[i] = d;
+        parent[i] = from;
+        queue[tail++] = i;
+      }
+      return tail;
+    }
+
+    private int local(int cell) {
+      int x = cell % cols - x0;
+      int y = cell / cols - y0;
+      return x >= 0 && x < width && y >= 0 && y < height ? y * SECTOR_SIZE + x : -1;
+    }
+
+    private int global(int i) {
+      return (y0 + i / SECTOR_SIZE) * cols + x0 + i % SECTOR_SIZE;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import model.vector.GridVec;
+import view.ViewableGrid;
+
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Cells the game is played on, either a fixed size {@code GridMap} or a {@code ChunkedGridMap}
+ * generated as it is explored
+ */
+abstract class WorldMap implements ViewableGrid {
+  /**
+   * checks if position is on the map
+   */
+  abstract boolean validPos(GridVec pos);
+
+  /**
+   * @return value stored at given position
+   */
+  abstract int get(GridVec pos) throws IndexOutOfBoundsException;
+
+  /**
+   * @return true if the cell at {@code x}, {@code y} is a wall or off the map
+   */
+  abstract boolean isSolid(int x, int y);
+
+  /**
+   * remove a block from the entity layer
+   */
+  abstract void clearBlock(GridVec pos) throws IndexOutOfBoundsException;
+
+  /**
+   * move blocks as one batch, the entity layer never holds a half applied move
+   */
+  abstract void moveBlocks(List<GridVec> from, List<GridVec> to);
+
+  /**
+   * search with the {@code PathFinder} of given mode, safe to call from several threads at once
+   * @param mode must search per query
+   * @return the first step in the path, null if there is none
+   */
+  abstract GridVec findPath(GridVec from, GridVec to, PathMode mode);
+
+  /**
+   * A* search, safe to call from several threads at once
+   * @return the first step in the path, null if there is none
+   */
+  GridVec findPath(GridVec from, GridVec to) {
+    return findPath(from, to, PathMode.A_STAR);
+  }
+
+  /**
+   * hierarchical A* over precomputed sectors, safe to call from several threads at once
+   * @return the first step in the path, null if there is none
+   */
+  abstract GridVec findHierarchicalPath(GridVec from, GridVec to);
+
+  /**
+   * first step along a shared BFS distance field rooted at {@code to}, not thread safe
+   * @return the first step in the path, null if there is none
+   */
+  abstract GridVec findFlowStep(GridVec from, GridVec to);
+
+  /**
+   * idle engines of every mode searching per query, engines are only created once acquired
+   */
+  static EnumMap<PathMode, EnginePool<PathFinder>> finderPools(int capacity) {
+    var pools = new EnumMap<PathMode, EnginePool<PathFinder>>(PathMode.class);
+    for (var mode : PathMode.values()) {
+      if (mode.searchesPerQuery()) {
+        pools.put(mode, new EnginePool<>(() -> mode.newFinder(capacity)));
+      }
+    }
+    return pools;
+  }
+}
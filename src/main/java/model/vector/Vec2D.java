@@ -5,6 +5,14 @@ public record Vec2D(double x, double y) {
     return new Vec2D(a.x + b.x, a.y + b.y);
   }
 
+  /**
+   * @param alpha 0 for {@code from} up to 1 for {@code to}
+   * @return point on the line between two vectors
+   */
+  public static Vec2D lerp(Vec2D from, Vec2D to, double alpha) {
+    return new Vec2D(from.x + (to.x - from.x) * alpha, from.y + (to.y - from.y) * alpha);
+  }
+
   /**
    * dot product of two vectors
    */
@@ -0,0 +1,239 @@
+package net;
+
+import controller.BlockTint;
+import controller.FramePacer;
+import controller.GameEngine;
+import controller.KeyController;
+import model.vector.Vec2D;
+import view.View;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import static net.SnapshotFormat.*;
+
+/**
+ * Plays a game on a {@code GameServer}, rendering its snapshots.
+ * <br/>
+ * A single loop thread sends the held down keys whenever they change, applies every snapshot that
+ * arrived to a {@code RemoteModel} and draws a frame, without ever blocking on the socket. The camera
+ * is interpolated from the state before the latest snapshots to the state after, over one tick, so
+ * motion stays smooth at refresh rates above the tick rate.
+ */
+public final class GameClient implements Runnable, Closeable {
+  private static final long TICK_NANOS = GameEngine.TICK_MS * 1_000_000L;
+  private static final int MIN_BUFFER_BYTES = 8 * 1024;
+
+  private final SocketChannel channel;
+  private final RemoteModel model = new RemoteModel();
+  private ByteBuffer in = ByteBuffer.allocate(MIN_BUFFER_BYTES);
+  private final ByteBuffer out = ByteBuffer.allocate(64);
+
+  private View view;
+  private KeyController keys;
+  private Window window;
+  private FramePacer pacer;
+  private BlockTint tint;
+  private volatile boolean running;
+  private Thread thread;
+
+  private int sentInput = -1;
+  // camera before the latest snapshots, and when they arrived
+  private Vec2D prevPos;
+  private Vec2D prevDir;
+  private Vec2D prevViewport;
+  private long arrived;
+
+  private GameClient(SocketChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * connect to a server and wait for the first keyframe of the game it starts
+   */
+  public static GameClient connect(InetSocketAddress address) throws IOException {
+    if (address == null) {
+      throw new NullPointerException();
+    }
+
+    var channel = SocketChannel.open(address);
+    var client = new GameClient(channel);
+    try {
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      while (!client.model.ready()) {
+        if (!client.receive()) {
+          throw new EOFException("server closed the connection");
+        }
+      }
+      channel.configureBlocking(false);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return client;
+  }
+
+  /**
+   * game as last sent by the server, hand it to the {@code View} drawing it
+   */
+  public RemoteModel model() {
+    return model;
+  }
+
+  /**
+   * start the loop thread, {@code window} must be showing
+   * @param window top level window holding {@code view}, frames are drawn into its buffer strategy
+   * @param targetFps frames drawn per second at most, 0 for as many as possible
+   */
+  public synchronized void start(View view, KeyController keys, Window window, int targetFps) {
+    if (view == null || keys == null || window == null) {
+      throw new NullPointerException();
+    }
+    if (thread != null) {
+      throw new IllegalStateException("already started");
+    }
+
+    // checks the frame rate before anything is assigned
+    this.pacer = new FramePacer(targetFps);
+    this.view = view;
+    this.keys = keys;
+    this.window = window;
+    this.tint = new BlockTint(view);
+
+    window.setIgnoreRepaint(true);
+    view.setActiveRendering(true);
+    window.createBufferStrategy(2);
+
+    running = true;
+    thread = new Thread(this, "game-client");
+    thread.start();
+  }
+
+  /**
+   * stop the loop thread and disconnect
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    if (thread != null && thread != Thread.currentThread()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    channel.close();
+  }
+
+  @Override
+  public void run() {
+    saveCamera();
+    pacer.restart();
+    try {
+      while (running) {
+        sendInput();
+
+        var pos = model.getPlayerPos();
+        var dir = model.getPlayerDir();
+        var viewport = model.getViewport();
+        long applied = model.snapshots();
+        long keyframes = model.keyframes();
+        if (!receive()) {
+          System.out.println("server closed the connection");
+          return;
+        }
+        if (model.snapshots() != applied) {
+          prevPos = pos;
+          prevDir = dir;
+          prevViewport = viewport;
+          if (model.keyframes() != keyframes) {
+            // a new game, nothing to move in from
+            saveCamera();
+          }
+          arrived = System.nanoTime();
+          tint.update(GameEngine.blockSpeedFraction(model.timeSinceStart()));
+        }
+
+        if (render(Math.min(1, (double) (System.nanoTime() - arrived) / TICK_NANOS))) {
+          pacer.waitForNextFrame();
+        } else {
+          // nothing changed, the server sends changes once per tick at most
+          LockSupport.parkNanos(TICK_NANOS);
+          pacer.restart();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void sendInput() throws IOException {
+    // a server that stopped reading only gets the latest input once it reads again
+    int input = keys.input();
+    if (input != sentInput && out.hasRemaining()) {
+      out.put((byte) input);
+      sentInput = input;
+    }
+    if (out.hasRemaining() && keys.takeNewGameRequest()) {
+      out.put((byte) NEW_GAME);
+    }
+
+    out.flip();
+    channel.write(out);
+    out.compact();
+  }
+
+  /**
+   * read what arrived and apply every complete message
+   * @return false once the server closed the connection
+   */
+  private boolean receive() throws IOException {
+    int read = channel.read(in);
+    in.flip();
+    while (in.remaining() >= LENGTH_BYTES) {
+      int length = in.getInt(in.position());
+      if (in.remaining() < LENGTH_BYTES + length) {
+        break;
+      }
+
+      int end = in.position() + LENGTH_BYTES + length;
+      var message = in.slice(in.position() + LENGTH_BYTES, length);
+      model.apply(message);
+      in.position(end);
+    }
+    in.compact();
+
+    if (in.remaining() == 0) {
+      // a keyframe larger than the buffer, make room for all of it
+      var larger = ByteBuffer.allocate(in.capacity() * 2);
+      larger.put(in.flip());
+      in = larger;
+    }
+    return read >= 0;
+  }
+
+  private void saveCamera() {
+    prevPos = model.getPlayerPos();
+    prevDir = model.getPlayerDir();
+    prevViewport = model.getViewport();
+  }
+
+  /**
+   * @param alpha how far the camera has moved from before the latest snapshots towards them, 0 to 1
+   * @return false if nothing changed since the previous frame, which was left showing
+   */
+  private boolean render(double alpha) {
+    var pos = Vec2D.lerp(prevPos, model.getPlayerPos(), alpha);
+    var dir = Vec2D.lerp(prevDir, model.getPlayerDir(), alpha);
+    var viewport = Vec2D.lerp(prevViewport, model.getViewport(), alpha);
+    return view.renderTo(window, pos, dir, viewport);
+  }
+}
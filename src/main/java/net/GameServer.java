@@ -0,0 +1,399 @@
+package net;
+
+import controller.GameEngine;
+import controller.TickClock;
+import metrics.Metrics;
+import model.GameState;
+import model.Model;
+import model.PathMode;
+import replay.GameSetup;
+import simulation.Options;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.SnapshotFormat.*;
+
+/**
+ * Headless server playing the games of all its clients, on a single thread.
+ * <br/>
+ * The model has a single player, so every connection gets a session with a game of its own, seeded
+ * from the server's seed and the session's number. One non-blocking selector accepts connections,
+ * reads inputs and flushes snapshots, and in between all games advance together by fixed steps of
+ * {@code GameEngine.TICK_MS}. After each step every session is sent one snapshot of what changed
+ * in its game, see {@code SnapshotFormat}. A client that reads too slowly fills its outbound buffer,
+ * its changes then pile up in the encoder and go out merged into a later delta, so it never holds
+ * up the others.
+ * <br/>
+ * Maps are generated on the loop thread when a client connects or starts a new game, keep them
+ * small. Blocks plan their paths on that thread too, see {@code Model.setParallelPlanning}.
+ */
+public final class GameServer implements Runnable, Closeable {
+  private static final long TICK_NANOS = GameEngine.TICK_MS * 1_000_000L;
+  // longest stretch of time caught up on at once, avoids a spiral of death after a long stall
+  private static final long MAX_CATCH_UP_NANOS = 250_000_000L;
+  private static final int MIN_BUFFER_BYTES = 8 * 1024;
+
+  /**
+   * @param mapSize size of each session's map, unbounded maps are not served
+   * @param seed seed of the first session, session {@code i} plays {@code seed + i}
+   */
+  public record Config(int mapSize, int blockCount, PathMode pathMode, long seed) {
+    public Config {
+      if (pathMode == null) {
+        throw new NullPointerException();
+      }
+      if (mapSize < 1) {
+        throw new IllegalArgumentException("map size must be positive");
+      }
+    }
+
+    GameSetup setup(long session) {
+      return new GameSetup(seed + session, mapSize, blockCount, pathMode);
+    }
+  }
+
+  private final Config config;
+  private final Selector selector;
+  private final ServerSocketChannel server;
+  private final List<Session> sessions = new ArrayList<>();
+  private long accepted;
+
+  private volatile boolean running = true;
+  // written by the loop thread only
+  private volatile long ticks;
+  private volatile long busyNanos;
+  private volatile long bytesSent;
+  private volatile int sessionCount;
+
+  /**
+   * bind to given address, clients are served once {@code run} is called
+   */
+  public GameServer(InetSocketAddress address, Config config) throws IOException {
+    if (address == null || config == null) {
+      throw new NullPointerException();
+    }
+    // fails fast on a block count the map has no room for
+    config.setup(0).newModel(new TickClock());
+
+    this.config = config;
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    try {
+      server.bind(address);
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      server.close();
+      selector.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return port the server listens on, useful when bound to port 0
+   */
+  public int port() throws IOException {
+    return ((InetSocketAddress) server.getLocalAddress()).getPort();
+  }
+
+  /**
+   * number of connected sessions
+   */
+  public int sessions() {
+    return sessionCount;
+  }
+
+  /**
+   * number of ticks played since the server started
+   */
+  public long ticks() {
+    return ticks;
+  }
+
+  /**
+   * time spent playing ticks and sending snapshots, in nanoseconds, the rest is spent waiting
+   */
+  public long busyNanos() {
+    return busyNanos;
+  }
+
+  /**
+   * bytes of snapshots handed to the sockets
+   */
+  public long bytesSent() {
+    return bytesSent;
+  }
+
+  /**
+   * Serve clients until closed, closing every connection on the way out
+   */
+  @Override
+  public void run() {
+    try {
+      long nextTick = System.nanoTime();
+      while (running) {
+        long wait = nextTick - System.nanoTime();
+        if (wait >= 1_000_000) {
+          selector.select(this::handle, wait / 1_000_000);
+        } else {
+          selector.selectNow(this::handle);
+        }
+
+        long now = System.nanoTime();
+        if (now - nextTick < 0) {
+          continue;
+        }
+        if (now - nextTick > MAX_CATCH_UP_NANOS) {
+          nextTick = now - MAX_CATCH_UP_NANOS;
+        }
+        int steps = 0;
+        for (; now - nextTick >= 0; nextTick += TICK_NANOS) {
+          steps++;
+        }
+        tick(steps);
+
+        long nanos = System.nanoTime() - now;
+        busyNanos += nanos;
+        if (Metrics.ENABLED) {
+          Metrics.SERVER_TICK_NANOS.record(nanos);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("server loop failed", e);
+    } finally {
+      for (var session : sessions) {
+        session.close();
+      }
+      sessions.clear();
+      sessionCount = 0;
+      try {
+        server.close();
+        selector.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  /**
+   * stop serving, the loop closes every connection before {@code run} returns
+   */
+  @Override
+  public void close() {
+    running = false;
+    selector.wakeup();
+  }
+
+  /**
+   * advance every game by given number of fixed steps, then send each its snapshot
+   */
+  private void tick(int steps) {
+    for (var session : sessions) {
+      for (int i = 0; i < steps; i++) {
+        session.step();
+      }
+      session.send();
+    }
+    sessions.removeIf(Session::closed);
+    sessionCount = sessions.size();
+    ticks += steps;
+  }
+
+  private void handle(SelectionKey key) {
+    if (!key.isValid()) {
+      return;
+    }
+    if (key.isAcceptable()) {
+      accept();
+      return;
+    }
+
+    var session = (Session) key.attachment();
+    if (key.isReadable()) {
+      session.read();
+    }
+    if (key.isValid() && key.isWritable()) {
+      session.flush();
+    }
+  }
+
+  private void accept() {
+    SocketChannel channel;
+    while (true) {
+      try {
+        channel = server.accept();
+        if (channel == null) {
+          return;
+        }
+      } catch (IOException e) {
+        // out of file descriptors and the like, try again at the next select
+        e.printStackTrace();
+        return;
+      }
+
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        var session = new Session(channel, config.setup(accepted++));
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        sessions.add(session);
+        sessionCount = sessions.size();
+        session.send();
+      } catch (IOException e) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+          // closing a broken connection
+        }
+      }
+    }
+  }
+
+  /**
+   * game of one connection and its buffers
+   */
+  private final class Session {
+    private final SocketChannel channel;
+    private SelectionKey key;
+    private final GameEngine engine;
+    private final Model model;
+    private final SnapshotEncoder encoder;
+    private final ByteBuffer in = ByteBuffer.allocate(64);
+    private final ByteBuffer out;
+
+    private int input;
+    private boolean newGameRequested;
+    private boolean waitingToWrite;
+    private boolean closed;
+
+    Session(SocketChannel channel, GameSetup setup) {
+      this.channel = channel;
+      var clock = new TickClock();
+      model = setup.newModel(clock);
+      // the loop thread plays every session, it does not hand searches to the common pool
+      model.setParallelPlanning(false);
+      engine = new GameEngine(model, clock);
+      encoder = new SnapshotEncoder(model);
+
+      var grid = model.getGrid();
+      int keyframe = keyframeBytes(grid.cols(), grid.rows(), setup.blockCount());
+      out = ByteBuffer.allocate(Math.max(MIN_BUFFER_BYTES, 2 * keyframe));
+    }
+
+    boolean closed() {
+      return closed;
+    }
+
+    void step() {
+      if (newGameRequested && model.getGameState() == GameState.GAME_OVER) {
+        engine.startNewGame();
+        encoder.requestKeyframe();
+      }
+      newGameRequested = false;
+      engine.tick(input);
+    }
+
+    /**
+     * queue the snapshot of everything that changed since the last one and start sending it
+     */
+    void send() {
+      if (closed) {
+        return;
+      }
+      int before = out.position();
+      encoder.write(out);
+      bytesSent += out.position() - before;
+      flush();
+    }
+
+    void read() {
+      try {
+        if (channel.read(in) < 0) {
+          close();
+          return;
+        }
+      } catch (IOException e) {
+        close();
+        return;
+      }
+
+      in.flip();
+      while (in.hasRemaining()) {
+        int b = in.get() & 0xFF;
+        if (b == NEW_GAME) {
+          newGameRequested = true;
+        } else if (b < NEW_GAME) {
+          input = b;
+        } else {
+          // not a client of ours
+          close();
+          return;
+        }
+      }
+      in.clear();
+    }
+
+    void flush() {
+      if (closed || out.position() == 0) {
+        return;
+      }
+      out.flip();
+      try {
+        channel.write(out);
+      } catch (IOException e) {
+        close();
+        return;
+      } finally {
+        out.compact();
+      }
+
+      // only ask for write readiness while the socket is full, it is reported all the time otherwise
+      boolean pending = out.position() > 0;
+      if (pending != waitingToWrite) {
+        waitingToWrite = pending;
+        key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+      }
+    }
+
+    void close() {
+      closed = true;
+      if (key != null) {
+        key.cancel();
+      }
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+        // the connection is gone either way
+      }
+    }
+  }
+
+  /**
+   * Serve games until killed. Arguments are key=value pairs: port, size, blocks, mode and seed
+   */
+  public static void main(String[] args) throws IOException {
+    var options = Options.parse(args);
+
+    Metrics.register();
+    var config = new Config(
+        options.getInt("size", 50),
+        options.getInt("blocks", 1),
+        PathMode.valueOf(options.get("mode", "FLOW_FIELD")),
+        options.getLong("seed", 1)
+    );
+    var address = new InetSocketAddress(options.getInt("port", 7777));
+    var server = new GameServer(address, config);
+    System.out.println("serving on port " + server.port());
+    server.run();
+  }
+}
@@ -0,0 +1,291 @@
+package net;
+
+import model.GameState;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+import view.ViewableGrid;
+import view.ViewableModel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.SnapshotFormat.*;
+
+/**
+ * Game state of a client, rebuilt from the snapshots a {@code GameServer} sends, for a {@code View}
+ * to render.
+ * <br/>
+ * Not thread safe, apply snapshots on the thread that renders.
+ */
+public final class RemoteModel implements ViewableModel {
+  private static final GameState[] STATES = GameState.values();
+
+  private final RemoteGrid grid = new RemoteGrid();
+  private long time;
+  private GameState state;
+  private int score;
+  // pos, dir and viewport, x then y, in fixed point
+  private final int[] vectors = new int[6];
+  private List<GridVec> blocks = List.of();
+
+  private long snapshots;
+  private long keyframes;
+  private long version;
+
+  /**
+   * @return true once a keyframe has been applied, there is nothing to show before
+   */
+  public boolean ready() {
+    return state != null;
+  }
+
+  /**
+   * number of snapshots applied
+   */
+  public long snapshots() {
+    return snapshots;
+  }
+
+  /**
+   * number of keyframes applied, a new one means a new game or a reset of the state
+   */
+  public long keyframes() {
+    return keyframes;
+  }
+
+  /**
+   * apply one message sent by the server, without its length prefix
+   */
+  public void apply(ByteBuffer message) {
+    byte tag = message.get();
+    switch (tag) {
+      case KEYFRAME -> applyKeyframe(message);
+      case DELTA -> {
+        if (!ready()) {
+          throw new IllegalStateException("delta before the first keyframe");
+        }
+        applyDelta(message);
+      }
+      default -> throw new IllegalArgumentException("unknown snapshot " + tag);
+    }
+    snapshots++;
+  }
+
+  private void applyKeyframe(ByteBuffer message) {
+    keyframes++;
+    version++;
+    time = message.getLong();
+    state = STATES[message.get()];
+    score = message.getInt();
+    int cols = message.getInt();
+    int rows = message.getInt();
+    var walls = new long[wallWords(cols, rows)];
+    for (int i = 0; i < walls.length; i++) {
+      walls[i] = message.getLong();
+    }
+    grid.reset(cols, rows, walls);
+
+    for (int i = 0; i < vectors.length; i++) {
+      vectors[i] = message.getInt();
+    }
+
+    int count = message.getInt();
+    var positions = new ArrayList<GridVec>(count);
+    for (int i = 0; i < count; i++) {
+      positions.add(new GridVec(message.getInt(), message.getInt()));
+    }
+    blocks = positions;
+  }
+
+  private void applyDelta(ByteBuffer message) {
+    time += getVarint(message);
+    int changes = message.get();
+    // walls count in the grid's own version
+    if ((changes & ~CELLS) != 0) {
+      version++;
+    }
+    if ((changes & PLAYER) != 0) {
+      addDifferences(message, 0, 2);
+    }
+    if ((changes & TURN) != 0) {
+      addDifferences(message, 2, 6);
+    }
+    if ((changes & STEPS) != 0) {
+      applySteps(message);
+    }
+    if ((changes & PLACED) != 0) {
+      var positions = new ArrayList<GridVec>(blocks.size());
+      for (int i = 0; i < blocks.size(); i++) {
+        positions.add(new GridVec(message.getInt(), message.getInt()));
+      }
+      blocks = positions;
+    }
+    if ((changes & CELLS) != 0) {
+      int count = getVarint(message);
+      for (int k = 0; k < count; k++) {
+        grid.set(getVarint(message), message.get() != 0);
+      }
+    }
+    if ((changes & STATE) != 0) {
+      state = STATES[message.get()];
+      score = message.getInt();
+    }
+  }
+
+  private void applySteps(ByteBuffer message) {
+    var positions = new ArrayList<GridVec>(blocks.size());
+    int bits = 0;
+    int pending = 0;
+    for (var from : blocks) {
+      if (pending < STEP_BITS) {
+        bits |= (message.get() & 0xFF) << pending;
+        pending += 8;
+      }
+      int step = bits & (1 << STEP_BITS) - 1;
+      bits >>>= STEP_BITS;
+      pending -= STEP_BITS;
+
+      positions.add(switch (step) {
+        case STAY -> from;
+        case RIGHT -> new GridVec(from.x() + 1, from.y());
+        case LEFT -> new GridVec(from.x() - 1, from.y());
+        case DOWN -> new GridVec(from.x(), from.y() + 1);
+        case UP -> new GridVec(from.x(), from.y() - 1);
+        default -> throw new IllegalArgumentException("unknown block step " + step);
+      });
+    }
+    blocks = positions;
+  }
+
+  private void addDifferences(ByteBuffer message, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int zigzag = getVarint(message);
+      vectors[i] += zigzag >>> 1 ^ -(zigzag & 1);
+    }
+  }
+
+  private static int getVarint(ByteBuffer message) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = message.get();
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+
+  @Override
+  public int checkGridCell(GridVec pos) throws IndexOutOfBoundsException {
+    if (pos.x() < 0 || pos.x() >= grid.cols() || pos.y() < 0 || pos.y() >= grid.rows()) {
+      throw new IndexOutOfBoundsException();
+    }
+    // like the model, blocks leave the map once the game is over
+    return state == GameState.ACTIVE && blocks.contains(pos) ? 2 : grid.cell(pos.x(), pos.y());
+  }
+
+  @Override
+  public ViewableGrid getGrid() {
+    return grid;
+  }
+
+  @Override
+  public List<GridVec> getBlockPositions() {
+    return blocks;
+  }
+
+  @Override
+  public Vec2D getPlayerPos() {
+    return vector(0);
+  }
+
+  @Override
+  public Vec2D getPlayerDir() {
+    return vector(2);
+  }
+
+  @Override
+  public Vec2D getViewport() {
+    return vector(4);
+  }
+
+  private Vec2D vector(int at) {
+    return new Vec2D(unfixed(vectors[at]), unfixed(vectors[at + 1]));
+  }
+
+  @Override
+  public long version() {
+    return version;
+  }
+
+  @Override
+  public GameState getGameState() {
+    return state;
+  }
+
+  @Override
+  public long timeSinceStart() {
+    return time;
+  }
+
+  @Override
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * walls as last sent by the server, blocks are kept apart
+   */
+  private static final class RemoteGrid implements ViewableGrid {
+    private int cols;
+    private int rows;
+    private long[] walls = new long[0];
+    private long version;
+
+    void reset(int cols, int rows, long[] walls) {
+      this.cols = cols;
+      this.rows = rows;
+      this.walls = walls;
+      version++;
+    }
+
+    void set(int i, boolean wall) {
+      if (wall) {
+        walls[i >>> 6] |= 1L << i;
+      } else {
+        walls[i >>> 6] &= ~(1L << i);
+      }
+      version++;
+    }
+
+    @Override
+    public int cols() {
+      return cols;
+    }
+
+    @Override
+    public int rows() {
+      return rows;
+    }
+
+    @Override
+    public int cell(int x, int y) {
+      int i = y * cols + x;
+      return (int) (walls[i >>> 6] >>> i & 1L);
+    }
+
+    /**
+     * maps served are small, rays walk them cell by cell
+     */
+    @Override
+    public int emptyShift(int x, int y) {
+      return 0;
+    }
+
+    @Override
+    public long version() {
+      return version;
+    }
+  }
+}
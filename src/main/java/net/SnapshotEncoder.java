@@ -0,0 +1,317 @@
+package net;
+
+import model.GameState;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+import view.ViewableModel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.SnapshotFormat.*;
+
+/**
+ * Turns the state of one game into the snapshots of {@code SnapshotFormat}. Remembers what it sent
+ * last, so every delta only carries what changed since, whatever number of ticks lies in between.
+ * <br/>
+ * Not thread safe, use one per session on the thread playing its game.
+ */
+final class SnapshotEncoder {
+  private final ViewableModel model;
+  private boolean keyframePending = true;
+
+  // state as last sent
+  private long time;
+  private GameState state;
+  private int score;
+  // pos, dir and viewport, x then y, in fixed point
+  private final int[] vectors = new int[6];
+  private int[] blockX = new int[0];
+  private int[] blockY = new int[0];
+  private int cols;
+  private int rows;
+  private long[] walls = new long[0];
+  private long wallVersion;
+
+  // scratch space of the delta being written
+  private final int[] current = new int[6];
+  private int[] changedCells = new int[16];
+  private int changedCount;
+
+  SnapshotEncoder(ViewableModel model) {
+    if (model == null) {
+      throw new NullPointerException();
+    }
+
+    this.model = model;
+  }
+
+  /**
+   * send the full state with the next snapshot, needed at every new game
+   */
+  void requestKeyframe() {
+    keyframePending = true;
+  }
+
+  /**
+   * Append whatever changed since the last snapshot, nothing if nothing did. Never needs more room
+   * than a keyframe takes
+   * @return false if the snapshot does not fit into {@code out}, nothing was written then and the
+   * changes are sent with a later snapshot
+   */
+  boolean write(ByteBuffer out) {
+    if (keyframePending || model.getBlockPositions().size() != blockX.length) {
+      var grid = model.getGrid();
+      if (out.remaining() < keyframeBytes(grid.cols(), grid.rows(), model.getBlockPositions().size())) {
+        return false;
+      }
+      writeKeyframe(out);
+      keyframePending = false;
+      return true;
+    }
+
+    return writeDelta(out);
+  }
+
+  private void writeKeyframe(ByteBuffer out) {
+    var grid = model.getGrid();
+    cols = grid.cols();
+    rows = grid.rows();
+    walls = new long[wallWords(cols, rows)];
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if (grid.cell(x, y) != 0) {
+          int i = y * cols + x;
+          walls[i >>> 6] |= 1L << i;
+        }
+      }
+    }
+    wallVersion = grid.version();
+
+    time = model.timeSinceStart();
+    state = model.getGameState();
+    score = model.getScore();
+    readVectors(vectors);
+
+    var blocks = model.getBlockPositions();
+    blockX = new int[blocks.size()];
+    blockY = new int[blocks.size()];
+    for (int i = 0; i < blocks.size(); i++) {
+      blockX[i] = blocks.get(i).x();
+      blockY[i] = blocks.get(i).y();
+    }
+
+    int start = begin(out);
+    out.put(KEYFRAME).putLong(time).put((byte) state.ordinal()).putInt(score).putInt(cols).putInt(rows);
+    for (long word : walls) {
+      out.putLong(word);
+    }
+    for (int v : vectors) {
+      out.putInt(v);
+    }
+    out.putInt(blockX.length);
+    for (int i = 0; i < blockX.length; i++) {
+      out.putInt(blockX[i]).putInt(blockY[i]);
+    }
+    end(out, start);
+  }
+
+  private boolean writeDelta(ByteBuffer out) {
+    readVectors(current);
+    var blocks = model.getBlockPositions();
+    long now = model.timeSinceStart();
+    var nowState = model.getGameState();
+    int nowScore = model.getScore();
+
+    int changes = 0;
+    if (current[0] != vectors[0] || current[1] != vectors[1]) {
+      changes |= PLAYER;
+    }
+    for (int i = 2; i < 6; i++) {
+      if (current[i] != vectors[i]) {
+        changes |= TURN;
+      }
+    }
+    changes |= blockChanges(blocks);
+    long version = model.getGrid().version();
+    if (version != wallVersion) {
+      if (findChangedCells() > 0) {
+        changes |= CELLS;
+      } else {
+        wallVersion = version;
+      }
+    }
+    if (nowState != state || nowScore != score) {
+      changes |= STATE;
+    }
+    if (changes == 0 && now == time) {
+      return true;
+    }
+
+    int bound = deltaBytes(blockX.length);
+    if ((changes & CELLS) != 0) {
+      bound += MAX_VARINT_BYTES + changedCount * (MAX_VARINT_BYTES + 1);
+      int keyframe = keyframeBytes(cols, rows, blockX.length);
+      if (bound > keyframe) {
+        // so many cells changed that the whole map is smaller
+        if (out.remaining() < keyframe) {
+          return false;
+        }
+        writeKeyframe(out);
+        return true;
+      }
+    }
+    if (out.remaining() < bound) {
+      return false;
+    }
+
+    int start = begin(out);
+    out.put(DELTA);
+    putVarint(out, (int) (now - time));
+    out.put((byte) changes);
+    if ((changes & PLAYER) != 0) {
+      putDifference(out, 0, 2);
+    }
+    if ((changes & TURN) != 0) {
+      putDifference(out, 2, 6);
+    }
+    if ((changes & STEPS) != 0) {
+      putSteps(out, blocks);
+    }
+    if ((changes & PLACED) != 0) {
+      for (int i = 0; i < blockX.length; i++) {
+        out.putInt(blocks.get(i).x()).putInt(blocks.get(i).y());
+      }
+    }
+    if ((changes & CELLS) != 0) {
+      putCells(out);
+    }
+    if ((changes & STATE) != 0) {
+      out.put((byte) nowState.ordinal()).putInt(nowScore);
+    }
+    end(out, start);
+
+    time = now;
+    state = nowState;
+    score = nowScore;
+    System.arraycopy(current, 0, vectors, 0, vectors.length);
+    for (int i = 0; i < blockX.length; i++) {
+      blockX[i] = blocks.get(i).x();
+      blockY[i] = blocks.get(i).y();
+    }
+    wallVersion = version;
+    return true;
+  }
+
+  /**
+   * @return {@code STEPS} if blocks moved a cell at most, {@code PLACED} if any moved further, else 0
+   */
+  private int blockChanges(List<GridVec> blocks) {
+    int changes = 0;
+    for (int i = 0; i < blockX.length; i++) {
+      int dx = blocks.get(i).x() - blockX[i];
+      int dy = blocks.get(i).y() - blockY[i];
+      if (dx == 0 && dy == 0) {
+        continue;
+      }
+      if (Math.abs(dx) + Math.abs(dy) > 1) {
+        return PLACED;
+      }
+      changes = STEPS;
+    }
+    return changes;
+  }
+
+  /**
+   * compare every cell to the walls last sent
+   * @return number of cells that changed, their indices are in {@code changedCells}
+   */
+  private int findChangedCells() {
+    var grid = model.getGrid();
+    changedCount = 0;
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        int i = y * cols + x;
+        boolean wall = grid.cell(x, y) != 0;
+        if (wall != ((walls[i >>> 6] & 1L << i) != 0)) {
+          if (changedCount == changedCells.length) {
+            changedCells = Arrays.copyOf(changedCells, changedCount * 2);
+          }
+          changedCells[changedCount++] = i;
+        }
+      }
+    }
+    return changedCount;
+  }
+
+  private void putCells(ByteBuffer out) {
+    putVarint(out, changedCount);
+    for (int k = 0; k < changedCount; k++) {
+      int i = changedCells[k];
+      walls[i >>> 6] ^= 1L << i;
+      putVarint(out, i);
+      out.put((byte) (walls[i >>> 6] >>> i & 1L));
+    }
+  }
+
+  private void putSteps(ByteBuffer out, List<GridVec> blocks) {
+    int bits = 0;
+    int pending = 0;
+    for (int i = 0; i < blockX.length; i++) {
+      int dx = blocks.get(i).x() - blockX[i];
+      int dy = blocks.get(i).y() - blockY[i];
+      int step = dx == 1 ? RIGHT : dx == -1 ? LEFT : dy == 1 ? DOWN : dy == -1 ? UP : STAY;
+
+      bits |= step << pending;
+      pending += STEP_BITS;
+      if (pending >= 8) {
+        out.put((byte) bits);
+        bits >>>= 8;
+        pending -= 8;
+      }
+    }
+    if (pending > 0) {
+      out.put((byte) bits);
+    }
+  }
+
+  private void putDifference(ByteBuffer out, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int difference = current[i] - vectors[i];
+      putVarint(out, difference << 1 ^ difference >> 31);
+    }
+  }
+
+  private void readVectors(int[] into) {
+    put(into, 0, model.getPlayerPos());
+    put(into, 2, model.getPlayerDir());
+    put(into, 4, model.getViewport());
+  }
+
+  private static void put(int[] into, int at, Vec2D v) {
+    into[at] = fixed(v.x());
+    into[at + 1] = fixed(v.y());
+  }
+
+  private static void putVarint(ByteBuffer out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.put((byte) (value & 0x7f | 0x80));
+      value >>>= 7;
+    }
+    out.put((byte) value);
+  }
+
+  /**
+   * leave room for the length of the message about to be written
+   */
+  private static int begin(ByteBuffer out) {
+    int start = out.position();
+    out.putInt(0);
+    return start;
+  }
+
+  private static void end(ByteBuffer out, int start) {
+    out.putInt(start, out.position() - start - LENGTH_BYTES);
+  }
+}
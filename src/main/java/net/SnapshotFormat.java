@@ -0,0 +1,80 @@
+package net;
+
+/**
+ * Wire format between {@code GameServer} and its clients over TCP, all numbers big endian.
+ * <pre>
+ * client to server, single bytes
+ *   input     mask of held down directions, see Direction.bit(), always below NEW_GAME
+ *   NEW_GAME  start a new game once the current one is over
+ * server to client, messages prefixed by their length:int
+ *   KEYFRAME  tag:byte time:long state:byte score:int cols:int rows:int walls:long[(cols * rows + 63) / 64]
+ *             pos, dir and viewport as fixed x:int y:int, blockCount:int then x:int y:int per block
+ *   DELTA     tag:byte elapsed:varint changes:byte, then the parts flagged in changes, in this order
+ *             PLAYER  pos as 2 zigzag varints, fixed point differences to the previous position
+ *             TURN    dir and viewport the same way, 4 zigzag varints
+ *             STEPS   one 3 bit step per block, see STAY to UP, packed low bits first as in replays
+ *             PLACED  x:int y:int per block, when a block moved further than a step
+ *             CELLS   count:varint then index:varint value:byte per changed cell
+ *             STATE   state:byte score:int
+ * </pre>
+ * A keyframe is sent when a client connects and at every new game, deltas after every tick that
+ * changed anything. TCP delivers them all in order, so every delta applies to the state the client
+ * holds. Vectors are fixed point with {@code FIXED_BITS} fractional bits and differences of those
+ * ints, so the client never drifts from what the server sent.
+ */
+final class SnapshotFormat {
+  static final int NEW_GAME = 0x80;
+
+  static final byte KEYFRAME = 1;
+  static final byte DELTA = 2;
+
+  static final int PLAYER = 1;
+  static final int TURN = 1 << 1;
+  static final int STEPS = 1 << 2;
+  static final int PLACED = 1 << 3;
+  static final int CELLS = 1 << 4;
+  static final int STATE = 1 << 5;
+
+  static final int STAY = 0;
+  static final int RIGHT = 1;
+  static final int LEFT = 2;
+  static final int DOWN = 3;
+  static final int UP = 4;
+  static final int STEP_BITS = 3;
+
+  static final int FIXED_BITS = 16;
+
+  // length prefix of every server message
+  static final int LENGTH_BYTES = 4;
+  static final int MAX_VARINT_BYTES = 5;
+
+  private SnapshotFormat() {}
+
+  static int wallWords(int cols, int rows) {
+    return (int) (((long) cols * rows + 63) / 64);
+  }
+
+  static int keyframeBytes(int cols, int rows, int blockCount) {
+    return LENGTH_BYTES + 1 + 8 + 1 + 4 + 4 + 4 + wallWords(cols, rows) * 8 + 6 * 4 + 4 + blockCount * 8;
+  }
+
+  /**
+   * @return largest delta without changed cells
+   */
+  static int deltaBytes(int blockCount) {
+    return LENGTH_BYTES + 1 + MAX_VARINT_BYTES + 1 + 6 * MAX_VARINT_BYTES
+        + Math.max(stepBytes(blockCount), blockCount * 8) + 1 + 4;
+  }
+
+  static int stepBytes(int blockCount) {
+    return (blockCount * STEP_BITS + 7) / 8;
+  }
+
+  static int fixed(double value) {
+    return (int) Math.round(value * (1 << FIXED_BITS));
+  }
+
+  static double unfixed(int value) {
+    return value / (double) (1 << FIXED_BITS);
+  }
+}
@@ -0,0 +1,30 @@
+package replay;
+
+import controller.TickClock;
+import model.Model;
+import model.PathMode;
+
+/**
+ * Everything besides the inputs that decides how a game plays out
+ * @param mapSize size of the map, 0 for an unbounded chunked map
+ */
+public record GameSetup(long seed, int mapSize, int blockCount, PathMode pathMode) {
+  public GameSetup {
+    if (pathMode == null) {
+      throw new NullPointerException();
+    }
+    if (mapSize < 0) {
+      throw new IllegalArgumentException("negative map size");
+    }
+  }
+
+  /**
+   * @param clock game time of the model, must be advanced by the engine playing it
+   * @return model playing the first game of this setup
+   */
+  public Model newModel(TickClock clock) {
+    return mapSize == 0
+        ? Model.unbounded(pathMode, blockCount, seed, clock)
+        : new Model(mapSize, pathMode, blockCount, seed, clock);
+  }
+}
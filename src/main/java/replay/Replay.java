@@ -0,0 +1,82 @@
+package replay;
+
+import controller.GameEngine;
+import controller.TickClock;
+import model.Model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Plays a recorded game again from its setup and inputs, checking it unfolds exactly as recorded.
+ */
+public final class Replay {
+  private Replay() {}
+
+  /**
+   * Simulate every recorded tick again, comparing the blocks after each tick and the player at every
+   * keyframe
+   * @return first tick that played out differently, -1 if all match
+   */
+  public static long resimulate(ReplayReader reader) {
+    reader.seek(0);
+    var clock = new TickClock();
+    var model = reader.setup().newModel(clock);
+    var engine = new GameEngine(model, clock);
+
+    if (!matchesKeyframe(model, reader)) {
+      return 0;
+    }
+
+    while (reader.hasNext()) {
+      reader.next();
+      if (reader.startedNewGame()) {
+        engine.startNewGame();
+      }
+      if (reader.atKeyframe() && !matchesKeyframe(model, reader)) {
+        return reader.tick() - 1;
+      }
+
+      engine.tick(reader.input());
+      if (!model.getBlockPositions().equals(reader.blockPositions())) {
+        return reader.tick() - 1;
+      }
+    }
+
+    return -1;
+  }
+
+  private static boolean matchesKeyframe(Model model, ReplayReader reader) {
+    return model.getPlayerPos().equals(reader.keyframePlayerPos())
+        && model.getPlayerDir().equals(reader.keyframePlayerDir())
+        && model.getViewport().equals(reader.keyframeViewport());
+  }
+
+  /**
+   * Arguments: replay file, optionally a tick to seek to and print
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      throw new IllegalArgumentException("usage: Replay file [tick]");
+    }
+
+    var reader = ReplayReader.open(Path.of(args[0]));
+    System.out.println(reader.setup() + ", " + reader.ticks() + " ticks");
+
+    long start = System.nanoTime();
+    long diverged = resimulate(reader);
+    double ms = (System.nanoTime() - start) / 1e6;
+    if (diverged < 0) {
+      System.out.printf("all %d ticks played out as recorded, in %.0f ms%n", reader.ticks(), ms);
+    } else {
+      System.out.println("diverged at tick " + diverged);
+    }
+
+    if (args.length > 1) {
+      reader.seek(Long.parseLong(args[1]));
+      System.out.println("tick " + reader.tick() + " of game " + reader.game()
+          + ", player at keyframe " + reader.keyframeTick() + ": " + reader.keyframePlayerPos()
+          + ", blocks: " + reader.blockPositions());
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package replay;
+
+/**
+ * Layout of a replay file, all numbers big endian.
+ * <pre>
+ * header   magic:int version:byte seed:long mapSize:int blockCount:int pathMode:byte
+ * records  until END, see the tags below
+ * index    count:int then count times tick:long offset:int, one entry per keyframe in file order
+ * trailer  indexOffset:int magic:int
+ * </pre>
+ * A tick record is a single byte below {@code KEYFRAME}: the input mask in the low six bits and
+ * {@code MOVED} if blocks moved during the tick. Without {@code MOVED} a varint follows with the
+ * number of ticks played with that input, with it the tick is played once and followed by one 3 bit
+ * delta per block, see {@code STAY} to {@code UP}, packed low bits first.
+ */
+final class ReplayFormat {
+  static final int MAGIC = 0x45544252; // "ETBR"
+  static final byte VERSION = 1;
+
+  static final int INPUT_MASK = 0x3f;
+  static final int MOVED = 0x40;
+  // tick played at keyframe, game number, player pos, dir and viewport, then every block as x, y
+  static final int KEYFRAME = 0x80;
+  // a new game started, always followed by its keyframe
+  static final int NEW_GAME = 0x81;
+  static final int END = 0x82;
+
+  static final int STAY = 0;
+  static final int RIGHT = 1;
+  static final int LEFT = 2;
+  static final int DOWN = 3;
+  static final int UP = 4;
+  static final int DELTA_BITS = 3;
+
+  // full state every ten seconds of play bounds the work of a seek
+  static final int KEYFRAME_INTERVAL = 600;
+
+  private ReplayFormat() {}
+
+  static int keyframeBytes(int blockCount) {
+    return 1 + 8 + 4 + 6 * 8 + blockCount * 8;
+  }
+
+  static int deltaBytes(int blockCount) {
+    return (blockCount * DELTA_BITS + 7) / 8;
+  }
+}
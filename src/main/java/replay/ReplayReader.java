@@ -0,0 +1,343 @@
+package replay;
+
+import model.PathMode;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static replay.ReplayFormat.*;
+
+/**
+ * Plays back a log written by {@code ReplayWriter}, one tick at a time from any tick.
+ * <br/>
+ * The file is memory mapped, so only the pages around the cursor are ever read in. {@code seek} finds
+ * the closest keyframe through the index at the end of the file and decodes forward from there, runs
+ * of equal input are skipped whole. Ticks are counted over active games only, the ticks between
+ * game over and the next game are not recorded.
+ * <br/>
+ * The player is only known exactly at keyframes, in between it has to be simulated again from the
+ * inputs, see {@code Replay}. Not thread safe.
+ */
+public final class ReplayReader {
+  private final ByteBuffer buffer;
+  private final GameSetup setup;
+  private final long[] keyframeTicks;
+  private final int[] keyframeOffsets;
+
+  private long tick;
+  private int game;
+  private int input;
+  private final int[] blockX;
+  private final int[] blockY;
+
+  // state of the last keyframe read
+  private long keyframeTick;
+  private Vec2D playerPos;
+  private Vec2D playerDir;
+  private Vec2D viewport;
+
+  // current run of ticks, read but not yet played
+  private int runInput;
+  private int runRemaining;
+  private boolean runMoved;
+
+  // events read ahead of the next tick, and those that came before the current one
+  private boolean pendingNewGame;
+  private boolean pendingKeyframe;
+  private boolean startedNewGame;
+  private boolean atKeyframe;
+
+  private ReplayReader(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+
+    int size = buffer.limit();
+    if (size < 30 || buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+      throw new IOException("not a replay file");
+    }
+    if (buffer.get(4) != VERSION) {
+      throw new IOException("unsupported replay version " + buffer.get(4));
+    }
+
+    buffer.position(5);
+    long seed = buffer.getLong();
+    int mapSize = buffer.getInt();
+    int blockCount = buffer.getInt();
+    int pathMode = buffer.get();
+    if (blockCount < 1 || pathMode < 0 || pathMode >= PathMode.values().length) {
+      throw new IOException("corrupt replay header");
+    }
+    setup = new GameSetup(seed, mapSize, blockCount, PathMode.values()[pathMode]);
+    int headerEnd = buffer.position();
+
+    buffer.position(buffer.getInt(size - 8));
+    int count = buffer.getInt();
+    keyframeTicks = new long[count];
+    keyframeOffsets = new int[count];
+    for (int i = 0; i < count; i++) {
+      keyframeTicks[i] = buffer.getLong();
+      keyframeOffsets[i] = buffer.getInt();
+    }
+    if (count == 0 || keyframeOffsets[0] != headerEnd) {
+      throw new IOException("corrupt replay index");
+    }
+
+    blockX = new int[blockCount];
+    blockY = new int[blockCount];
+    seek(0);
+  }
+
+  /**
+   * map a replay file, positioned at the start of the first game
+   */
+  public static ReplayReader open(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("replay too large to map");
+      }
+      // the mapping stays valid after the channel is closed
+      return new ReplayReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  public GameSetup setup() {
+    return setup;
+  }
+
+  /**
+   * number of ticks recorded
+   */
+  public long ticks() {
+    return keyframeTicks[keyframeTicks.length - 1];
+  }
+
+  /**
+   * Move the cursor to right before tick {@code tick} is played, {@code ticks()} seeks to the end. A
+   * game starting at that tick has already been started
+   */
+  public void seek(long tick) {
+    if (tick < 0 || tick > ticks()) {
+      throw new IllegalArgumentException("tick out of range");
+    }
+
+    // last keyframe at or before tick, a new game keyframe wins over a periodic one at the same tick
+    int lo = 0;
+    int hi = keyframeTicks.length - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (keyframeTicks[mid] <= tick) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+
+    buffer.position(keyframeOffsets[lo]);
+    runRemaining = 0;
+    readRecord();
+    this.tick = keyframeTick;
+    pendingNewGame = false;
+    pendingKeyframe = false;
+    startedNewGame = false;
+    atKeyframe = false;
+
+    while (this.tick < tick) {
+      if (runRemaining == 0) {
+        readRecord();
+      } else if (runMoved) {
+        play();
+      } else {
+        int skip = (int) Math.min(runRemaining, tick - this.tick);
+        runRemaining -= skip;
+        this.tick += skip;
+        input = runInput;
+      }
+    }
+    pendingNewGame = false;
+    pendingKeyframe = false;
+  }
+
+  /**
+   * @return false once every recorded tick has been played
+   */
+  public boolean hasNext() {
+    while (runRemaining == 0) {
+      if ((buffer.get(buffer.position()) & 0xff) == END) {
+        return false;
+      }
+      readRecord();
+    }
+    return true;
+  }
+
+  /**
+   * play the next tick
+   */
+  public void next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    startedNewGame = pendingNewGame;
+    atKeyframe = pendingKeyframe;
+    pendingNewGame = false;
+    pendingKeyframe = false;
+    play();
+  }
+
+  /**
+   * number of ticks played so far
+   */
+  public long tick() {
+    return tick;
+  }
+
+  /**
+   * games started before the current tick, 0 during the first game
+   */
+  public int game() {
+    return game;
+  }
+
+  /**
+   * input the current tick was played with
+   */
+  public int input() {
+    return input;
+  }
+
+  /**
+   * true if a new game was started right before the current tick
+   */
+  public boolean startedNewGame() {
+    return startedNewGame;
+  }
+
+  /**
+   * true if a keyframe was read right before the current tick, the keyframe state is from before it
+   */
+  public boolean atKeyframe() {
+    return atKeyframe;
+  }
+
+  /**
+   * block positions after the current tick
+   */
+  public List<GridVec> blockPositions() {
+    var positions = new ArrayList<GridVec>(blockX.length);
+    for (int i = 0; i < blockX.length; i++) {
+      positions.add(new GridVec(blockX[i], blockY[i]));
+    }
+    return Collections.unmodifiableList(positions);
+  }
+
+  /**
+   * number of ticks played when the last keyframe was taken
+   */
+  public long keyframeTick() {
+    return keyframeTick;
+  }
+
+  /**
+   * player position at the last keyframe
+   */
+  public Vec2D keyframePlayerPos() {
+    return playerPos;
+  }
+
+  /**
+   * player direction at the last keyframe
+   */
+  public Vec2D keyframePlayerDir() {
+    return playerDir;
+  }
+
+  /**
+   * viewport at the last keyframe
+   */
+  public Vec2D keyframeViewport() {
+    return viewport;
+  }
+
+  private void play() {
+    runRemaining--;
+    tick++;
+    input = runInput;
+    if (runMoved) {
+      readDeltas();
+    }
+  }
+
+  /**
+   * read the record under the cursor, tick records only start a run
+   */
+  private void readRecord() {
+    int tag = buffer.get() & 0xff;
+    switch (tag) {
+      case KEYFRAME -> readKeyframe();
+      case NEW_GAME -> pendingNewGame = true;
+      case END -> throw new IllegalStateException("read past the end of the replay");
+      default -> {
+        if (tag > (INPUT_MASK | MOVED)) {
+          throw new IllegalStateException("corrupt replay record " + tag);
+        }
+        runInput = tag & INPUT_MASK;
+        runMoved = (tag & MOVED) != 0;
+        runRemaining = runMoved ? 1 : readVarint();
+      }
+    }
+  }
+
+  private void readKeyframe() {
+    keyframeTick = buffer.getLong();
+    game = buffer.getInt();
+    playerPos = new Vec2D(buffer.getDouble(), buffer.getDouble());
+    playerDir = new Vec2D(buffer.getDouble(), buffer.getDouble());
+    viewport = new Vec2D(buffer.getDouble(), buffer.getDouble());
+    for (int i = 0; i < blockX.length; i++) {
+      blockX[i] = buffer.getInt();
+      blockY[i] = buffer.getInt();
+    }
+    pendingKeyframe = true;
+  }
+
+  private void readDeltas() {
+    int bits = 0;
+    int available = 0;
+    for (int i = 0; i < blockX.length; i++) {
+      if (available < DELTA_BITS) {
+        bits |= (buffer.get() & 0xff) << available;
+        available += 8;
+      }
+
+      switch (bits & (1 << DELTA_BITS) - 1) {
+        case RIGHT -> blockX[i]++;
+        case LEFT -> blockX[i]--;
+        case DOWN -> blockY[i]++;
+        case UP -> blockY[i]--;
+        default -> {}
+      }
+      bits >>>= DELTA_BITS;
+      available -= DELTA_BITS;
+    }
+  }
+
+  private int readVarint() {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = buffer.get();
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package replay;
+
+import controller.ControllableModel;
+import controller.TickListener;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static replay.ReplayFormat.*;
+
+/**
+ * Records a game as a compact binary log, played back with {@code ReplayReader}.
+ * <br/>
+ * Ticks played with the same input and no block move collapse into one byte and a varint count, and
+ * a block move costs 3 bits per block. A keyframe with the full state is written at every new game
+ * and every {@code KEYFRAME_INTERVAL} ticks, so a seek never has to decode more than that.
+ * <br/>
+ * Meant to be the {@code TickListener} of the engine playing the model, on the engine's thread.
+ */
+public final class ReplayWriter implements TickListener, Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final ControllableModel model;
+  private final int blockCount;
+
+  private long flushed; // bytes already handed to the channel
+  private long ticks;
+  private int game;
+  private List<GridVec> blocks;
+
+  // ticks played with the same input since the last record
+  private int runInput = -1;
+  private int runLength;
+
+  private long[] keyframeTicks = new long[16];
+  private int[] keyframeOffsets = new int[16];
+  private int keyframes;
+
+  /**
+   * start recording, the current state of {@code model} is the first keyframe
+   * @param setup how {@code model} was created, needed to play the game again
+   */
+  public ReplayWriter(Path path, ControllableModel model, GameSetup setup) throws IOException {
+    if (path == null || model == null || setup == null) {
+      throw new NullPointerException();
+    }
+
+    this.model = model;
+    this.blockCount = setup.blockCount();
+    buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, keyframeBytes(blockCount) + 1));
+    channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+
+    buffer.putInt(MAGIC)
+        .put(VERSION)
+        .putLong(setup.seed())
+        .putInt(setup.mapSize())
+        .putInt(setup.blockCount())
+        .put((byte) setup.pathMode().ordinal());
+    keyframe();
+  }
+
+  @Override
+  public void ticked(int input) {
+    var positions = model.getBlockPositions();
+    if (!positions.equals(blocks)) {
+      endRun();
+      room(1 + deltaBytes(blockCount));
+      buffer.put((byte) (input & INPUT_MASK | MOVED));
+      putDeltas(positions);
+      blocks = positions;
+    } else if (input == runInput) {
+      runLength++;
+    } else {
+      endRun();
+      runInput = input;
+      runLength = 1;
+    }
+
+    ticks++;
+    if (ticks % KEYFRAME_INTERVAL == 0) {
+      endRun();
+      keyframe();
+    }
+  }
+
+  @Override
+  public void newGame() {
+    endRun();
+    room(1);
+    buffer.put((byte) NEW_GAME);
+    game++;
+    keyframe();
+  }
+
+  /**
+   * number of ticks recorded
+   */
+  public long ticks() {
+    return ticks;
+  }
+
+  /**
+   * write the final keyframe and the index, then close the file
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      endRun();
+      keyframe();
+      room(1);
+      buffer.put((byte) END);
+
+      int indexOffset = offset();
+      room(4);
+      buffer.putInt(keyframes);
+      for (int i = 0; i < keyframes; i++) {
+        room(12);
+        buffer.putLong(keyframeTicks[i]).putInt(keyframeOffsets[i]);
+      }
+      room(8);
+      buffer.putInt(indexOffset).putInt(MAGIC);
+      flush();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void endRun() {
+    if (runLength == 0) {
+      return;
+    }
+
+    room(1 + 5);
+    buffer.put((byte) (runInput & INPUT_MASK));
+    putVarint(runLength);
+    runInput = -1;
+    runLength = 0;
+  }
+
+  private void keyframe() {
+    if (keyframes == keyframeTicks.length) {
+      keyframeTicks = Arrays.copyOf(keyframeTicks, keyframes * 2);
+      keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframes * 2);
+    }
+
+    blocks = model.getBlockPositions();
+    if (blocks.size() != blockCount) {
+      throw new IllegalStateException("block count differs from setup");
+    }
+
+    room(keyframeBytes(blockCount));
+    keyframeTicks[keyframes] = ticks;
+    keyframeOffsets[keyframes] = offset();
+    keyframes++;
+
+    buffer.put((byte) KEYFRAME).putLong(ticks).putInt(game);
+    putVec(model.getPlayerPos());
+    putVec(model.getPlayerDir());
+    putVec(model.getViewport());
+    for (var pos : blocks) {
+      buffer.putInt(pos.x()).putInt(pos.y());
+    }
+  }
+
+  private void putVec(Vec2D v) {
+    buffer.putDouble(v.x()).putDouble(v.y());
+  }
+
+  private void putDeltas(List<GridVec> positions) {
+    int bits = 0;
+    int pending = 0;
+    for (int i = 0; i < blockCount; i++) {
+      var from = blocks.get(i);
+      var to = positions.get(i);
+      int dx = to.x() - from.x();
+      int dy = to.y() - from.y();
+
+      int delta;
+      if (dx == 0 && dy == 0) {
+        delta = STAY;
+      } else if (dy == 0 && dx == 1) {
+        delta = RIGHT;
+      } else if (dy == 0 && dx == -1) {
+        delta = LEFT;
+      } else if (dx == 0 && dy == 1) {
+        delta = DOWN;
+      } else if (dx == 0 && dy == -1) {
+        delta = UP;
+      } else {
+        throw new IllegalStateException("block moved more than one cell in a tick");
+      }
+
+      bits |= delta << pending;
+      pending += DELTA_BITS;
+      if (pending >= 8) {
+        buffer.put((byte) bits);
+        bits >>>= 8;
+        pending -= 8;
+      }
+    }
+    if (pending > 0) {
+      buffer.put((byte) bits);
+    }
+  }
+
+  private void putVarint(int value) {
+    while ((value & ~0x7f) != 0) {
+      buffer.put((byte) (value & 0x7f | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private int offset() {
+    long offset = flushed + buffer.position();
+    if (offset > Integer.MAX_VALUE) {
+      throw new IllegalStateException("replay too large");
+    }
+    return (int) offset;
+  }
+
+  /**
+   * make sure {@code bytes} more fit into the buffer
+   */
+  private void room(int bytes) {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        flushed += channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buffer.clear();
+  }
+}
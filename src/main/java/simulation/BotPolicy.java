@@ -0,0 +1,14 @@
+package simulation;
+
+import controller.ControllableModel;
+
+/**
+ * Decides which keys a simulated player holds down, called once per tick
+ */
+@FunctionalInterface
+public interface BotPolicy {
+  /**
+   * @return mask of held down directions, see {@code Direction.bit()}
+   */
+  int input(ControllableModel model);
+}
@@ -0,0 +1,82 @@
+package simulation;
+
+import controller.Direction;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+
+import java.util.Random;
+
+/**
+ * Ready made bot policies
+ */
+public final class Bots {
+  private static final int RANDOM_WALK_PERIOD = 30; // ticks between random walk decisions
+
+  private Bots() {}
+
+  /**
+   * @return bot standing still, a baseline for how fast the blocks catch up
+   */
+  public static BotPolicy idle() {
+    return model -> 0;
+  }
+
+  /**
+   * @return bot walking forward, turning randomly every now and then
+   */
+  public static BotPolicy randomWalk(long seed) {
+    var random = new Random(seed);
+    int[] state = {0, 0}; // current input, ticks until next decision
+
+    return model -> {
+      if (state[1]-- <= 0) {
+        state[1] = RANDOM_WALK_PERIOD;
+        state[0] = Direction.FRONT.bit() | switch (random.nextInt(3)) {
+          case 0 -> Direction.ROT_LEFT.bit();
+          case 1 -> Direction.ROT_RIGHT.bit();
+          default -> 0;
+        };
+      }
+      return state[0];
+    };
+  }
+
+  /**
+   * @return bot walking forward while turning away from the closest block
+   */
+  public static BotPolicy flee() {
+    return model -> {
+      var pos = model.getPlayerPos();
+      GridVec closest = null;
+      double closestDist = Double.POSITIVE_INFINITY;
+      for (var blockPos : model.getBlockPositions()) {
+        double dist = Math.hypot(blockPos.x() + 0.5 - pos.x(), blockPos.y() + 0.5 - pos.y());
+        if (dist < closestDist) {
+          closestDist = dist;
+          closest = blockPos;
+        }
+      }
+      if (closest == null) {
+        return 0;
+      }
+
+      var away = new Vec2D(pos.x() - closest.x() - 0.5, pos.y() - closest.y() - 0.5);
+      var dir = model.getPlayerDir();
+      // sign of the cross product tells which way to turn
+      double cross = dir.x() * away.y() - dir.y() * away.x();
+      return Direction.FRONT.bit() | (cross > 0 ? Direction.ROT_LEFT.bit() : Direction.ROT_RIGHT.bit());
+    };
+  }
+
+  /**
+   * @param name one of idle, random or flee
+   */
+  public static BotPolicy byName(String name, long seed) {
+    return switch (name) {
+      case "idle" -> idle();
+      case "random" -> randomWalk(seed);
+      case "flee" -> flee();
+      default -> throw new IllegalArgumentException("unknown bot " + name);
+    };
+  }
+}
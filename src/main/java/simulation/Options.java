@@ -0,0 +1,54 @@
+package simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line arguments of the headless mains, given as key=value pairs in any order
+ */
+public final class Options {
+  private final Map<String, String> values;
+
+  private Options(Map<String, String> values) {
+    this.values = values;
+  }
+
+  /**
+   * @throws IllegalArgumentException if an argument is not a key=value pair
+   */
+  public static Options parse(String[] args) {
+    var values = new HashMap<String, String>();
+    for (var arg : args) {
+      var pair = arg.split("=", 2);
+      if (pair.length != 2) {
+        throw new IllegalArgumentException("expected key=value, got " + arg);
+      }
+      values.put(pair[0], pair[1]);
+    }
+    return new Options(values);
+  }
+
+  /**
+   * @return value given for {@code key}, null if it was left out
+   */
+  public String get(String key) {
+    return values.get(key);
+  }
+
+  /**
+   * @return value given for {@code key}, {@code fallback} if it was left out
+   */
+  public String get(String key, String fallback) {
+    return values.getOrDefault(key, fallback);
+  }
+
+  public int getInt(String key, int fallback) {
+    var value = values.get(key);
+    return value == null ? fallback : Integer.parseInt(value);
+  }
+
+  public long getLong(String key, long fallback) {
+    var value = values.get(key);
+    return value == null ? fallback : Long.parseLong(value);
+  }
+}
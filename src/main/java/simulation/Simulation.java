@@ -0,0 +1,217 @@
+package simulation;
+
+import controller.GameEngine;
+import controller.TickClock;
+import model.GameState;
+import model.Model;
+import model.PathMode;
+import replay.GameSetup;
+import replay.ReplayWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Headless soak testing, plays many games with bots at a fixed time step, in parallel across cores.
+ * <br/>
+ * Each game gets its own seed, model and simulated clock, so a single game can be replayed exactly by
+ * running it again with the same seed.
+ */
+public final class Simulation {
+  // tick costs are bucketed by power of two nanoseconds
+  private static final int BUCKETS = 64;
+
+  private Simulation() {}
+
+  /**
+   * @param games number of games to play
+   * @param mapSize size of each map, 0 for unbounded chunked maps
+   * @param blockCount number of blocks in each game
+   * @param pathMode how the blocks find the player
+   * @param maxTicks games still running after this many ticks are stopped
+   * @param seed seed of the first game, game {@code i} uses {@code seed + i}
+   * @param bots creates the bot for a game from its seed
+   * @param replayDir every game is recorded to {@code game-<seed>.replay} in here, null to record nothing
+   */
+  public record Config(int games, int mapSize, int blockCount, PathMode pathMode, int maxTicks, long seed,
+                       LongFunction<BotPolicy> bots, Path replayDir) {
+    public Config {
+      if (games < 1 || maxTicks < 1) {
+        throw new IllegalArgumentException("need at least one game and one tick");
+      }
+      if (pathMode == null || bots == null) {
+        throw new NullPointerException();
+      }
+    }
+  }
+
+  /**
+   * outcome of a single game
+   * @param survivedMs simulated time until caught, or until stopped
+   */
+  public record GameResult(long seed, boolean caught, long survivedMs, int ticks, long tickNanos, long maxTickNanos,
+                           long[] tickHistogram) {}
+
+  /**
+   * summary of a whole run, times in ms unless named otherwise
+   */
+  public record Report(int games, int caught, double meanSurvivedMs, long p50SurvivedMs, long p95SurvivedMs,
+                       long maxSurvivedMs, long ticks, double meanTickNanos, long p99TickNanos, long maxTickNanos,
+                       double wallMs) {
+    public double gamesPerSecond() {
+      return games / (wallMs / 1000.);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d games, %d caught, %.0f games/s%n" +
+          "survived ms: mean %.0f, p50 %d, p95 %d, max %d%n" +
+          "%d ticks, tick ns: mean %.0f, p99 < %d, max %d",
+          games, caught, gamesPerSecond(),
+          meanSurvivedMs, p50SurvivedMs, p95SurvivedMs, maxSurvivedMs,
+          ticks, meanTickNanos, p99TickNanos, maxTickNanos
+      );
+    }
+  }
+
+  /**
+   * play all games of given config on the common fork join pool
+   */
+  public static Report run(Config config) {
+    long start = System.nanoTime();
+    var results = IntStream.range(0, config.games())
+        .parallel()
+        .mapToObj(i -> play(config, config.seed() + i))
+        .toArray(GameResult[]::new);
+    double wallMs = (System.nanoTime() - start) / 1e6;
+
+    return summarize(results, wallMs);
+  }
+
+  /**
+   * play a single game to the end, or until {@code maxTicks}
+   */
+  public static GameResult play(Config config, long seed) {
+    var setup = new GameSetup(seed, config.mapSize(), config.blockCount(), config.pathMode());
+    var clock = new TickClock();
+    var model = setup.newModel(clock);
+    var engine = new GameEngine(model, clock);
+    var bot = config.bots().apply(seed);
+
+    if (config.replayDir() == null) {
+      return play(config, seed, model, engine, bot);
+    }
+
+    try (var replay = new ReplayWriter(config.replayDir().resolve("game-" + seed + ".replay"), model, setup)) {
+      engine.setTickListener(replay);
+      return play(config, seed, model, engine, bot);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static GameResult play(Config config, long seed, Model model, GameEngine engine, BotPolicy bot) {
+    var histogram = new long[BUCKETS];
+    long totalNanos = 0;
+    long maxNanos = 0;
+    int ticks = 0;
+
+    while (model.getGameState() == GameState.ACTIVE && ticks < config.maxTicks()) {
+      int input = bot.input(model);
+
+      long tickStart = System.nanoTime();
+      engine.tick(input);
+      long nanos = System.nanoTime() - tickStart;
+
+      histogram[63 - Long.numberOfLeadingZeros(nanos | 1)]++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+
+      ticks++;
+    }
+
+    boolean caught = model.getGameState() == GameState.GAME_OVER;
+    return new GameResult(seed, caught, model.timeSinceStart(), ticks, totalNanos, maxNanos, histogram);
+  }
+
+  private static Report summarize(GameResult[] results, double wallMs) {
+    var survived = Arrays.stream(results).mapToLong(GameResult::survivedMs).sorted().toArray();
+    var histogram = new long[BUCKETS];
+    long ticks = 0;
+    long tickNanos = 0;
+    long maxTickNanos = 0;
+    int caught = 0;
+
+    for (var result : results) {
+      for (int i = 0; i < BUCKETS; i++) {
+        histogram[i] += result.tickHistogram()[i];
+      }
+      ticks += result.ticks();
+      tickNanos += result.tickNanos();
+      maxTickNanos = Math.max(maxTickNanos, result.maxTickNanos());
+      caught += result.caught() ? 1 : 0;
+    }
+
+    return new Report(
+        results.length,
+        caught,
+        Arrays.stream(survived).average().orElse(0),
+        percentile(survived, 0.5),
+        percentile(survived, 0.95),
+        survived[survived.length - 1],
+        ticks,
+        ticks == 0 ? 0 : (double) tickNanos / ticks,
+        histogramPercentile(histogram, ticks, 0.99),
+        maxTickNanos,
+        wallMs
+    );
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+  }
+
+  /**
+   * @return upper bound of the bucket holding the given percentile
+   */
+  private static long histogramPercentile(long[] histogram, long count, double p) {
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen += histogram[i];
+      if (seen >= p * count) {
+        return 2L << i;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Arguments are key=value pairs, any left out use the default:
+   * games=1000 size=50 blocks=1 mode=FLOW_FIELD bot=flee maxTicks=36000 seed=1
+   * <br/>
+   * size=unbounded plays on chunked maps, record=dir records a replay of every game into dir
+   */
+  public static void main(String[] args) {
+    var options = Options.parse(args);
+    var bot = options.get("bot", "flee");
+    var size = options.get("size", "50");
+    var record = options.get("record");
+    var config = new Config(
+        options.getInt("games", 1000),
+        size.equals("unbounded") ? 0 : Integer.parseInt(size),
+        options.getInt("blocks", 1),
+        PathMode.valueOf(options.get("mode", "FLOW_FIELD")),
+        options.getInt("maxTicks", 36000),
+        options.getLong("seed", 1),
+        seed -> Bots.byName(bot, seed),
+        record != null ? Path.of(record) : null
+    );
+
+    System.out.println(run(config));
+  }
+}
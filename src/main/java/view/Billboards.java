@@ -0,0 +1,110 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * Entities seen as billboards: upright sprites one cell wide and tall, always facing the camera.
+ * <br/>
+ * {@code project} runs once per frame before any column is drawn. It moves every entity into camera
+ * space and drops those behind the camera, past the render distance or beside the screen, so they
+ * cost nothing further. The rest are sorted by depth with a primitive sort, which allocates nothing.
+ * Columns are then drawn far to near by whoever owns them, each sprite column only where it is
+ * closer than the wall the column's ray hit.
+ */
+final class Billboards {
+  // sprites closer to the camera plane than this would fill the screen, they are left out
+  private static final double NEAR_DISTANCE = 0.1;
+  // low bits of a sort key hold the sprite's slot, the high bits its depth
+  private static final int SLOT_BITS = 20;
+  private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+  // visible sprites of the frame, by slot
+  private double[] depth = new double[0];
+  private double[] left = new double[0];
+  private double[] width = new double[0];
+  // positive doubles order like their bits, so sorting these sorts by depth
+  private long[] keys = new long[0];
+  private int count;
+
+  /**
+   * project the entities standing at given positions for a frame {@code frameWidth} wide
+   * @param xs x of every entity's position, the entity is centered on it
+   * @param ys y of every entity's position
+   * @param n number of entities, the arrays may be longer
+   * @param maxDistance entities further away are not drawn
+   */
+  void project(Camera camera, double[] xs, double[] ys, int n, int frameWidth, double maxDistance) {
+    if (n > SLOT_MASK) {
+      throw new IllegalArgumentException("too many entities");
+    }
+    if (keys.length < n) {
+      depth = Arrays.copyOf(depth, n);
+      left = Arrays.copyOf(left, n);
+      width = Arrays.copyOf(width, n);
+      keys = Arrays.copyOf(keys, n);
+    }
+
+    // inverse of the matrix with the viewport and the direction as columns
+    double invDet = 1 / (camera.planeX() * camera.dirY() - camera.dirX() * camera.planeY());
+    double planeLength = Math.hypot(camera.planeX(), camera.planeY());
+
+    count = 0;
+    for (int i = 0; i < n; i++) {
+      double x = xs[i] - camera.posX();
+      double y = ys[i] - camera.posY();
+
+      // distance along the direction, same measure as the depth of walls
+      double z = invDet * (camera.planeX() * y - camera.planeY() * x);
+      if (z < NEAR_DISTANCE || z > maxDistance) {
+        continue;
+      }
+
+      double across = invDet * (camera.dirY() * x - camera.dirX() * y);
+      double center = frameWidth / 2. * (1 + across / z);
+      double w = frameWidth / (2 * planeLength * z);
+      if (center + w / 2 < 0 || center - w / 2 >= frameWidth) {
+        continue;
+      }
+
+      depth[count] = z;
+      left[count] = center - w / 2;
+      width[count] = w;
+      keys[count] = Double.doubleToRawLongBits(z) & ~SLOT_MASK | count;
+      count++;
+    }
+
+    Arrays.sort(keys, 0, count);
+  }
+
+  /**
+   * @return number of sprites left after culling
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * @param k position in drawing order, the farthest sprite comes first
+   */
+  double depth(int k) {
+    return depth[slot(k)];
+  }
+
+  /**
+   * @return screen x of the sprite's left edge, may lie left of the frame
+   */
+  double left(int k) {
+    return left[slot(k)];
+  }
+
+  /**
+   * @return width of the sprite on screen, in columns
+   */
+  double width(int k) {
+    return width[slot(k)];
+  }
+
+  private int slot(int k) {
+    return (int) (keys[count - 1 - k] & SLOT_MASK);
+  }
+}
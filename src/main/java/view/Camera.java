@@ -0,0 +1,12 @@
+package view;
+
+import model.vector.Vec2D;
+
+/**
+ * Player position, direction and viewport flattened to primitives, read once per frame
+ */
+record Camera(double posX, double posY, double dirX, double dirY, double planeX, double planeY) {
+  static Camera of(Vec2D pos, Vec2D dir, Vec2D viewport) {
+    return new Camera(pos.x(), pos.y(), dir.x(), dir.y(), viewport.x(), viewport.y());
+  }
+}
@@ -0,0 +1,167 @@
+package view;
+
+import model.GameState;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+
+import java.util.List;
+
+/**
+ * Everything a frame is drawn from, captured off a model once per tick and never changed after.
+ * <br/>
+ * The simulation publishes each new snapshot through a single volatile reference, so any number of
+ * rendering threads can pick up the latest one without locks and draw a consistent frame from it
+ * while the simulation moves on. The camera of the tick before is kept along, frames between two
+ * ticks are drawn from a camera in between.
+ * <br/>
+ * Walls are not copied, they are shared with the model's grid. They only change by map edits, which
+ * move the grid's version on, so a frame can tell from {@code getGrid().version()} against
+ * {@code gridVersion()} whether the walls it read are still the ones of this snapshot.
+ */
+public final class GameSnapshot implements ViewableModel {
+  private final long tick;
+  private final long version;
+  private final GameState state;
+  private final int score;
+  private final long timeSinceStart;
+  private final ViewableGrid grid;
+  private final long gridVersion;
+  private final List<GridVec> blockPositions;
+  private final Vec2D playerPos;
+  private final Vec2D playerDir;
+  private final Vec2D viewport;
+  // camera at the previous tick
+  private final Vec2D prevPos;
+  private final Vec2D prevDir;
+  private final Vec2D prevViewport;
+
+  private GameSnapshot(ViewableModel model, long tick, GameSnapshot previous) {
+    this.tick = tick;
+    version = model.version();
+    state = model.getGameState();
+    score = model.getScore();
+    timeSinceStart = model.timeSinceStart();
+    grid = model.getGrid();
+    gridVersion = grid.version();
+    // copies only if the model's list is not already unmodifiable
+    blockPositions = List.copyOf(model.getBlockPositions());
+    playerPos = model.getPlayerPos();
+    playerDir = model.getPlayerDir();
+    viewport = model.getViewport();
+    prevPos = previous == null ? playerPos : previous.playerPos;
+    prevDir = previous == null ? playerDir : previous.playerDir;
+    prevViewport = previous == null ? viewport : previous.viewport;
+  }
+
+  /**
+   * capture the state of a model that has not moved since the previous tick, such as at a new game
+   * @param tick number of the tick the model just played
+   */
+  public static GameSnapshot of(ViewableModel model, long tick) {
+    if (model == null) {
+      throw new NullPointerException();
+    }
+
+    return new GameSnapshot(model, tick, null);
+  }
+
+  /**
+   * capture the state of a model one tick after this snapshot, the camera moves from this one's
+   */
+  public GameSnapshot next(ViewableModel model) {
+    if (model == null) {
+      throw new NullPointerException();
+    }
+
+    return new GameSnapshot(model, tick + 1, this);
+  }
+
+  /**
+   * number of the tick captured
+   */
+  public long tick() {
+    return tick;
+  }
+
+  /**
+   * version of the grid's walls when captured
+   */
+  public long gridVersion() {
+    return gridVersion;
+  }
+
+  /**
+   * @param alpha how far time has moved from the previous tick towards this one, 0 to 1
+   */
+  public Vec2D playerPos(double alpha) {
+    return Vec2D.lerp(prevPos, playerPos, alpha);
+  }
+
+  /**
+   * @param alpha how far time has moved from the previous tick towards this one, 0 to 1
+   */
+  public Vec2D playerDir(double alpha) {
+    return Vec2D.lerp(prevDir, playerDir, alpha);
+  }
+
+  /**
+   * @param alpha how far time has moved from the previous tick towards this one, 0 to 1
+   */
+  public Vec2D viewport(double alpha) {
+    return Vec2D.lerp(prevViewport, viewport, alpha);
+  }
+
+  @Override
+  public int checkGridCell(GridVec pos) throws IndexOutOfBoundsException {
+    if (pos.x() < 0 || pos.x() >= grid.cols() || pos.y() < 0 || pos.y() >= grid.rows()) {
+      throw new IndexOutOfBoundsException();
+    }
+    // like the model, blocks leave the map once the game is over
+    return state == GameState.ACTIVE && blockPositions.contains(pos) ? 2 : grid.cell(pos.x(), pos.y());
+  }
+
+  @Override
+  public ViewableGrid getGrid() {
+    return grid;
+  }
+
+  @Override
+  public List<GridVec> getBlockPositions() {
+    return blockPositions;
+  }
+
+  @Override
+  public Vec2D getPlayerPos() {
+    return playerPos;
+  }
+
+  @Override
+  public Vec2D getPlayerDir() {
+    return playerDir;
+  }
+
+  @Override
+  public Vec2D getViewport() {
+    return viewport;
+  }
+
+  @Override
+  public long version() {
+    return version;
+  }
+
+  @Override
+  public GameState getGameState() {
+    return state;
+  }
+
+  @Override
+  public long timeSinceStart() {
+    return timeSinceStart;
+  }
+
+  @Override
+  public int getScore() {
+    return score;
+  }
+}
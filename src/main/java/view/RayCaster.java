@@ -0,0 +1,196 @@
+package view;
+
+import java.util.Arrays;
+
+/**
+ * DDA algorithm, based on this <a href="https://lodev.org/cgtutor/raycasting.html">article</a>
+ * by Lode Vandevenne
+ * <br/>
+ * Walks plain int coordinates over a {@code ViewableGrid} and stores its hits per screen column, so a
+ * frame allocates nothing. The outer wall ring is the only thing stopping a ray, there are no bounds
+ * checks. Different columns can be cast from different threads at the same time.
+ * <br/>
+ * Squares the grid reports as empty are crossed in a single jump: the ray is moved straight to the
+ * last cell it visits inside the square, with the DDA state it would have had after walking there.
+ * Jumps hit the same cells and sides as walking, depths can differ from it by a few ulps.
+ */
+final class RayCaster {
+  // cells walked between looks for empty squares, most rays in dense maps hit a wall before the first
+  private static final int SKIP_INTERVAL = 4;
+  // perpendicular distance to the wall hit by each column
+  private double[] depth = new double[0];
+  // cell value of the wall hit by each column
+  private int[] cells = new int[0];
+  // true if the wall hit faces along x, those are drawn darker
+  private boolean[] sideX = new boolean[0];
+
+  /**
+   * make room for a frame of given width, keeps the arrays if they are already big enough
+   */
+  void resize(int width) {
+    if (depth.length < width) {
+      depth = Arrays.copyOf(depth, width);
+      cells = Arrays.copyOf(cells, width);
+      sideX = Arrays.copyOf(sideX, width);
+    }
+  }
+
+  /**
+   * cast a single ray and record what it hit for the given column
+   * @param maxDistance rays reaching further than this stop and hit nothing, see {@code cell}
+   * @return number of cells and empty squares stepped through
+   */
+  int cast(ViewableGrid grid, double posX, double posY, double rayX, double rayY, double maxDistance,
+           int column) {
+    int mapX = (int) posX;
+    int mapY = (int) posY;
+
+    // 1. / 0 == Double.INFINITY which is the desired behaviour
+    double deltaDistX = Math.abs(1. / rayX);
+    double deltaDistY = Math.abs(1. / rayY);
+
+    int stepX;
+    int stepY;
+    double totalDistX;
+    double totalDistY;
+    if (rayX < 0) {
+      stepX = -1;
+      totalDistX = (posX - mapX) * deltaDistX;
+    } else {
+      stepX = 1;
+      totalDistX = (mapX + 1 - posX) * deltaDistX;
+    }
+    if (rayY < 0) {
+      stepY = -1;
+      totalDistY = (posY - mapY) * deltaDistY;
+    } else {
+      stepY = 1;
+      totalDistY = (mapY + 1 - posY) * deltaDistY;
+    }
+
+    boolean wallDirIsX;
+    int cell;
+    int steps = 0;
+    while (true) {
+      // plain DDA for a few cells, most rays in dense maps hit a wall in there
+      int n = SKIP_INTERVAL;
+      do {
+        if (totalDistX < totalDistY) {
+          totalDistX += deltaDistX;
+          mapX += stepX;
+          wallDirIsX = true;
+        } else {
+          totalDistY += deltaDistY;
+          mapY += stepY;
+          wallDirIsX = false;
+        }
+        steps++;
+        cell = grid.cell(mapX, mapY);
+      } while (cell == 0 && --n > 0);
+
+      double distance = wallDirIsX ? totalDistX - deltaDistX : totalDistY - deltaDistY;
+      if (distance > maxDistance) {
+        depth[column] = Double.POSITIVE_INFINITY;
+        cells[column] = 0;
+        sideX[column] = wallDirIsX;
+        return steps;
+      }
+      if (cell != 0) {
+        depth[column] = distance;
+        cells[column] = cell;
+        sideX[column] = wallDirIsX;
+        return steps;
+      }
+
+      // cross empty squares in one jump each, for as long as they follow each other
+      int shift;
+      while ((shift = grid.emptyShift(mapX, mapY)) > 0) {
+        // grid lines left to cross inside the square along each axis
+        int size = 1 << shift;
+        int linesX = stepX > 0 ? (mapX | size - 1) - mapX : mapX & size - 1;
+        int linesY = stepY > 0 ? (mapY | size - 1) - mapY : mapY & size - 1;
+        double exitX = linesX == 0 ? totalDistX : totalDistX + linesX * deltaDistX;
+        double exitY = linesY == 0 ? totalDistY : totalDistY + linesY * deltaDistY;
+
+        // the DDA steps along y while totalDistY <= totalDistX, and along x otherwise. Distances of
+        // axis parallel rays are infinite, so nothing is added unless a line is crossed
+        if (exitX < exitY) {
+          int crossed = crossings(exitX - totalDistY, Math.abs(rayY), linesY, true);
+          mapX += linesX * stepX;
+          totalDistX = exitX;
+          if (crossed > 0) {
+            mapY += crossed * stepY;
+            totalDistY += crossed * deltaDistY;
+          }
+        } else {
+          int crossed = crossings(exitY - totalDistX, Math.abs(rayX), linesX, false);
+          mapY += linesY * stepY;
+          totalDistY = exitY;
+          if (crossed > 0) {
+            mapX += crossed * stepX;
+            totalDistX += crossed * deltaDistX;
+          }
+        }
+        steps++;
+
+        // step out of the square, it only holds empty cells up to its border
+        if (totalDistX < totalDistY) {
+          totalDistX += deltaDistX;
+          mapX += stepX;
+          wallDirIsX = true;
+        } else {
+          totalDistY += deltaDistY;
+          mapY += stepY;
+          wallDirIsX = false;
+        }
+        steps++;
+
+        // open maps chain jumps over long stretches, stop once past the render distance
+        distance = wallDirIsX ? totalDistX - deltaDistX : totalDistY - deltaDistY;
+        if (distance > maxDistance) {
+          depth[column] = Double.POSITIVE_INFINITY;
+          cells[column] = 0;
+          sideX[column] = wallDirIsX;
+          return steps;
+        }
+        cell = grid.cell(mapX, mapY);
+        if (cell != 0) {
+          depth[column] = distance;
+          cells[column] = cell;
+          sideX[column] = wallDirIsX;
+          return steps;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param span distance from the next grid line to the exit of the square
+   * @param linesPerDistance lines crossed per unit of distance, the inverse of their spacing
+   * @param inclusive true if a line exactly at the exit is crossed first
+   * @return number of grid lines crossed before leaving the square, at most {@code lines}
+   */
+  private static int crossings(double span, double linesPerDistance, int lines, boolean inclusive) {
+    if (span < 0 || span == 0 && !inclusive || lines == 0) {
+      return 0;
+    }
+    double n = span * linesPerDistance;
+    int crossed = inclusive ? (int) n + 1 : (int) Math.ceil(n);
+    return Math.min(crossed, lines);
+  }
+
+  double depth(int column) {
+    return depth[column];
+  }
+
+  /**
+   * @return cell value of the wall hit, 0 if the ray went past the maximum distance
+   */
+  int cell(int column) {
+    return cells[column];
+  }
+
+  boolean sideX(int column) {
+    return sideX[column];
+  }
+}
@@ -0,0 +1,79 @@
+package view;
+
+/**
+ * Picks the fraction of the panel's width and height frames are rendered at, so frame times stay
+ * within a budget.
+ * <br/>
+ * Frame times are smoothed with a moving average restarted on every change of scale, so it only
+ * reflects frames at the current one. Quality drops a step once the average exceeds the budget. It
+ * only rises again after frames would have fit the next step up, scaled by its number of pixels,
+ * with room to spare for a good while. Between the two thresholds nothing changes, so the scale
+ * settles instead of flipping between neighbouring steps.
+ */
+final class ResolutionScaler {
+  // each step renders about 1.5 times fewer pixels than the one before
+  private static final double[] SCALES = {1, 0.8, 0.65, 0.5, 0.4, 0.33, 0.25};
+  // weight of the latest frame in the moving average
+  private static final double SMOOTHING = 0.1;
+  // frames measured at a new scale before the average is trusted
+  private static final int SETTLE_FRAMES = 10;
+  // fraction of the budget frames at the next step up must be expected to stay below
+  private static final double RAISE_HEADROOM = 0.8;
+  // consecutive frames with that much headroom needed before stepping up
+  private static final int RAISE_FRAMES = 60;
+
+  private final long budgetNanos;
+
+  private int step;
+  private double average;
+  private int frames;
+  private int headroomFrames;
+
+  /**
+   * @param budgetNanos time a frame may take
+   */
+  ResolutionScaler(long budgetNanos) {
+    if (budgetNanos <= 0) {
+      throw new IllegalArgumentException("budget must be positive");
+    }
+
+    this.budgetNanos = budgetNanos;
+  }
+
+  /**
+   * @return fraction of the panel's width and height to render the next frame at
+   */
+  double scale() {
+    return SCALES[step];
+  }
+
+  /**
+   * account for a frame rendered at the current scale
+   */
+  void record(long frameNanos) {
+    average = frames == 0 ? frameNanos : average + SMOOTHING * (frameNanos - average);
+    if (++frames < SETTLE_FRAMES) {
+      return;
+    }
+
+    if (average > budgetNanos && step < SCALES.length - 1) {
+      change(step + 1);
+      return;
+    }
+
+    double pixelRatio = step == 0 ? Double.POSITIVE_INFINITY : SCALES[step - 1] / SCALES[step];
+    if (average * pixelRatio * pixelRatio < budgetNanos * RAISE_HEADROOM) {
+      if (++headroomFrames >= RAISE_FRAMES) {
+        change(step - 1);
+      }
+    } else {
+      headroomFrames = 0;
+    }
+  }
+
+  private void change(int step) {
+    this.step = step;
+    frames = 0;
+    headroomFrames = 0;
+  }
+}
@@ -0,0 +1,114 @@
+package view;
+
+/**
+ * Square textures generated from a base color, as packed RGB texels ready to be copied into the
+ * frame. Wall textures are laid out column by column, so a screen column reads one contiguous run,
+ * floor textures row by row. Shading is baked in: walls facing x get their own darkened copy instead
+ * of shading every pixel drawn.
+ */
+final class Textures {
+  static final int SHIFT = 6;
+  static final int SIZE = 1 << SHIFT;
+  static final int MASK = SIZE - 1;
+
+  private static final int BRICK_HEIGHT = 16;
+  private static final int BRICK_WIDTH = 32;
+  private static final int MORTAR = 2;
+  private static final int BEVEL = 4;
+  private static final int TILE = 32;
+
+  private Textures() {
+  }
+
+  /**
+   * offset rows of bricks between lighter mortar, column major
+   */
+  static int[] bricks(int rgb) {
+    var texels = new int[SIZE * SIZE];
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        int row = y / BRICK_HEIGHT;
+        int bx = (x + (row % 2) * BRICK_WIDTH / 2) % BRICK_WIDTH;
+        boolean mortar = y % BRICK_HEIGHT < MORTAR || bx < MORTAR;
+        texels[x << SHIFT | y] = scale(rgb, mortar ? 1.25 : grain(x, y));
+      }
+    }
+    return texels;
+  }
+
+  /**
+   * a single panel lit from the top left, column major
+   */
+  static int[] panel(int rgb) {
+    var texels = new int[SIZE * SIZE];
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        double shade;
+        if (x < BEVEL || y < BEVEL) {
+          shade = x + y < SIZE ? 1.3 : 0.6;
+        } else if (x >= SIZE - BEVEL || y >= SIZE - BEVEL) {
+          shade = 0.6;
+        } else {
+          shade = grain(x, y);
+        }
+        texels[x << SHIFT | y] = scale(rgb, shade);
+      }
+    }
+    return texels;
+  }
+
+  /**
+   * square tiles with thin joints, row major
+   */
+  static int[] tiles(int rgb) {
+    var texels = new int[SIZE * SIZE];
+    for (int y = 0; y < SIZE; y++) {
+      for (int x = 0; x < SIZE; x++) {
+        boolean joint = x % TILE == 0 || y % TILE == 0;
+        boolean alternate = (x / TILE + y / TILE) % 2 == 0;
+        texels[y << SHIFT | x] = scale(rgb, joint ? 0.8 : (alternate ? 1 : 0.93) * grain(x, y));
+      }
+    }
+    return texels;
+  }
+
+  /**
+   * copy with every texel shaded by {@code darker(int)}
+   */
+  static int[] darker(int[] texels) {
+    var dark = new int[texels.length];
+    for (int i = 0; i < texels.length; i++) {
+      dark[i] = darker(texels[i]);
+    }
+    return dark;
+  }
+
+  /**
+   * same shading as {@code Color.darker()}, on a packed ARGB value
+   */
+  static int darker(int argb) {
+    int a = argb >>> 24;
+    int r = (int) (((argb >> 16) & 0xFF) * 0.7);
+    int g = (int) (((argb >> 8) & 0xFF) * 0.7);
+    int b = (int) ((argb & 0xFF) * 0.7);
+    return a << 24 | r << 16 | g << 8 | b;
+  }
+
+  /**
+   * fixed pseudo random brightness between 0.9 and 1 per texel
+   */
+  private static double grain(int x, int y) {
+    int hash = x * 73856093 ^ y * 19349663;
+    hash ^= hash >>> 13;
+    hash *= 0x5bd1e995;
+    hash ^= hash >>> 15;
+    return 0.9 + (hash & 0xFF) / 2550.;
+  }
+
+  private static int scale(int rgb, double factor) {
+    int r = Math.min(255, (int) ((rgb >> 16 & 0xFF) * factor));
+    int g = Math.min(255, (int) ((rgb >> 8 & 0xFF) * factor));
+    int b = Math.min(255, (int) ((rgb & 0xFF) * factor));
+    return 0xFF << 24 | r << 16 | g << 8 | b;
+  }
+}
@@ -1,24 +1,121 @@
 package view;
 
-import model.vector.GridVec;
+import metrics.Metrics;
+import model.GameState;
 import model.vector.Vec2D;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.Line2D;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class View extends JPanel {
-  private static final Map<Integer, Color> cellCodeToColor = Map.of(
-      1, Color.GRAY,
-      2, Color.YELLOW
-  );
+  private static final int SKY_COLOR = new Color(240, 255, 255).getRGB();
+  private static final int FLOOR_COLOR = new Color(100, 200, 150).getRGB();
+  // narrowest column range worth handing to its own fork join task
+  private static final int MIN_STRIP_WIDTH = 64;
+  // walls fade into the sky from this fraction of the render distance on
+  private static final double FOG_START = 0.5;
+  // fractional bits of the fixed point texture coordinates
+  private static final int FRACTION_BITS = 16;
+
+  // packed ARGB per cell code, and the same shaded the way Color.darker() does for walls facing x
+  private final int[] cellColors = {0, Color.GRAY.getRGB()};
+  private final int[] cellColorsDark = {0, Textures.darker(Color.GRAY.getRGB())};
+
+  // the same as textures, see Textures for their layout
+  private final int[][] cellTextures = {null, Textures.bricks(cellColors[1])};
+  private final int[][] cellTexturesDark = {null, Textures.darker(cellTextures[1])};
+  private final int[] floorTexture = Textures.tiles(FLOOR_COLOR);
+  private final int[] ceilingTexture = Textures.tiles(SKY_COLOR);
+
+  // blocks are drawn as billboards with these
+  private int blockColor = Color.YELLOW.getRGB();
+  private int[] blockTexture = Textures.panel(blockColor);
 
   private final ViewableModel model;
-  private Color blockColor = new Color(255, 255, 0);
+
+  private final RayCaster rayCaster = new RayCaster();
+  private final Billboards billboards = new Billboards();
+
+  // the world is drawn straight into the pixels of this image, then blitted once per frame
+  private BufferedImage frame;
+  private int[] pixels;
+
+  // frames narrower than this are cast on the rendering thread alone
+  private int parallelMinWidth = 1024;
+
+  // rays stop after this many cells, infinite for no limit
+  private double maxRenderDistance = Double.POSITIVE_INFINITY;
+
+  // textured walls, floor and ceiling instead of flat colors
+  private boolean textured = true;
+
+  // lowers the resolution frames are rendered at when they take too long, null to always render in full
+  private ResolutionScaler resolutionScaler;
+
+  // first and last row covered by the wall of each column, the floor and ceiling are cast around them
+  private int[] wallTop = new int[0];
+  private int[] wallBottom = new int[0];
+
+  // centers of the blocks' cells, handed to the billboards
+  private double[] blockX = new double[0];
+  private double[] blockY = new double[0];
+
+  // set when a game loop draws frames itself, Swing's own painting is then skipped
+  private volatile boolean activeRendering;
+
+  // what the frame last shown by renderTo was drawn from, a frame from the same is not drawn again
+  private long shownVersion = -1;
+  private ViewableGrid shownGrid;
+  private long shownGridVersion;
+  private Vec2D shownPos;
+  private Vec2D shownDir;
+  private Vec2D shownViewport;
+  private int shownWidth;
+  private int shownHeight;
+  // set by the setters and by damage to the window, frames drawn before no longer look right
+  private volatile boolean appearanceChanged;
+
+  // the window ignores the system's repaints under active rendering, these tell of damage instead
+  private final ComponentListener resizeListener = new ComponentAdapter() {
+    @Override
+    public void componentResized(ComponentEvent e) {
+      appearanceChanged = true;
+    }
+
+    @Override
+    public void componentShown(ComponentEvent e) {
+      appearanceChanged = true;
+    }
+  };
+  private final WindowAdapter restoreListener = new WindowAdapter() {
+    @Override
+    public void windowDeiconified(WindowEvent e) {
+      appearanceChanged = true;
+    }
+
+    @Override
+    public void windowActivated(WindowEvent e) {
+      appearanceChanged = true;
+    }
+
+    @Override
+    public void windowStateChanged(WindowEvent e) {
+      appearanceChanged = true;
+    }
+  };
+  private Window listenedWindow;
 
   public View(ViewableModel model) {
     if (model == null) {
@@ -37,47 +134,468 @@ public class View extends JPanel {
       throw new NullPointerException();
     }
 
-    this.blockColor = blockColor;
+    this.blockColor = blockColor.getRGB();
+    blockTexture = Textures.panel(this.blockColor);
+    appearanceChanged = true;
+  }
+
+  /**
+   * Draw textured walls, floor and ceiling, or flat colors as cheaper fallback. Textured is the default
+   */
+  public void setTextured(boolean textured) {
+    this.textured = textured;
+    appearanceChanged = true;
+  }
+
+  /**
+   * Hand painting over to a game loop calling {@code renderTo}, Swing repaints then leave the panel
+   * alone. While on, resizing, showing, restoring or activating the window has the next frame drawn
+   * in full. The panel must already be in its window
+   */
+  public void setActiveRendering(boolean activeRendering) {
+    this.activeRendering = activeRendering;
+
+    removeComponentListener(resizeListener);
+    if (listenedWindow != null) {
+      listenedWindow.removeWindowListener(restoreListener);
+      listenedWindow.removeWindowStateListener(restoreListener);
+      listenedWindow = null;
+    }
+    if (activeRendering) {
+      addComponentListener(resizeListener);
+      listenedWindow = SwingUtilities.getWindowAncestor(this);
+      if (listenedWindow != null) {
+        listenedWindow.addWindowListener(restoreListener);
+        listenedWindow.addWindowStateListener(restoreListener);
+      }
+      appearanceChanged = true;
+    }
+  }
+
+  /**
+   * Frames at least this wide have their columns split into strips and cast on the common fork join
+   * pool, narrower frames are cast serially on the rendering thread
+   * @param width 0 to always render in parallel, {@code Integer.MAX_VALUE} to never do so
+   */
+  public void setParallelMinWidth(int width) {
+    if (width < 0) {
+      throw new IllegalArgumentException("negative width");
+    }
+
+    parallelMinWidth = width;
+  }
+
+  /**
+   * Stop rays after given distance and fade walls into fog towards it, cuts the cost of frames
+   * looking down long open stretches
+   * @param distance in cells, {@code Double.POSITIVE_INFINITY} for no limit
+   */
+  public void setMaxRenderDistance(double distance) {
+    if (!(distance > 0)) {
+      throw new IllegalArgumentException("render distance must be positive");
+    }
+
+    maxRenderDistance = distance;
+    appearanceChanged = true;
+  }
+
+  /**
+   * Render fewer rays and rows than the panel has pixels whenever frames take longer than given time,
+   * and upscale them to the panel. Full resolution returns once frames have enough time to spare
+   * @param millis time a frame may take, {@code Double.POSITIVE_INFINITY} to always render in full
+   */
+  public void setFrameTimeBudget(double millis) {
+    if (!(millis > 0)) {
+      throw new IllegalArgumentException("frame time budget must be positive");
+    }
+
+    resolutionScaler = millis == Double.POSITIVE_INFINITY ? null : new ResolutionScaler((long) (millis * 1e6));
+    appearanceChanged = true;
   }
 
   @Override
   protected void paintComponent(Graphics g) {
+    if (activeRendering) {
+      return;
+    }
+
     super.paintComponent(g);
-    Graphics2D g2 = (Graphics2D) g;
+    render((Graphics2D) g, model.getPlayerPos(), model.getPlayerDir(), model.getViewport());
+  }
+
+  /**
+   * Draw a complete frame of the model seen from given camera, which may lie between two model
+   * states. Must only be called from one thread at a time, and the model must not change while it runs.
+   * @param g2 graphics with its origin at the top left corner of this panel
+   */
+  public void render(Graphics2D g2, Vec2D playerPos, Vec2D playerDir, Vec2D viewport) {
+    draw(g2, model, playerPos, playerDir, viewport);
+  }
+
+  /**
+   * Draw a complete frame of a snapshot instead of the model, the model may change meanwhile. Must
+   * only be called from one thread at a time
+   * @param alpha how far time has moved from the snapshot's previous tick towards it, 0 to 1
+   */
+  public void render(Graphics2D g2, GameSnapshot snapshot, double alpha) {
+    draw(g2, snapshot, snapshot.playerPos(alpha), snapshot.playerDir(alpha), snapshot.viewport(alpha));
+  }
 
-    switch (model.getGameState()) {
-      case ACTIVE -> paintWorld(g2);
+  private void draw(Graphics2D g2, ViewableModel state, Vec2D playerPos, Vec2D playerDir, Vec2D viewport) {
+    var scaler = resolutionScaler;
+    long start = Metrics.ENABLED || scaler != null ? System.nanoTime() : 0;
+    var camera = Camera.of(playerPos, playerDir, viewport);
+
+    double scale = scaler == null ? 1 : scaler.scale();
+    switch (state.getGameState()) {
+      case ACTIVE -> paintWorld(g2, state, camera, scale);
       case GAME_OVER -> {
-        paintWorld(g2);
-        paintGameOver(g2);
+        paintWorld(g2, state, camera, scale);
+        paintGameOver(g2, state.getScore());
+      }
+    }
+
+    if (Metrics.ENABLED || scaler != null) {
+      long nanos = System.nanoTime() - start;
+      if (scaler != null) {
+        scaler.record(nanos);
+      }
+      if (Metrics.ENABLED) {
+        Metrics.FRAME_NANOS.record(nanos);
+        Metrics.FRAME_SCALE_PERCENT.record(Math.round(scale * 100));
+      }
+    }
+  }
+
+  /**
+   * Draw a complete frame into the buffer strategy of {@code window} and show it, for game loops
+   * rendering actively. Same rules as {@code render}.
+   * <br/>
+   * Nothing is drawn when the camera, the panel's size and the versions of the model and its grid
+   * are all the same as for the previous frame, which is then still showing. An idle game costs
+   * next to nothing this way, on the game over screen or while the player stands still. A window
+   * that was resized, restored or activated, or a buffer strategy that lost its contents, has the
+   * next frame drawn anyway.
+   * @param window top level window holding this panel, its buffer strategy must have been created
+   * @return false if the frame was skipped
+   */
+  public boolean renderTo(Window window, Vec2D playerPos, Vec2D playerDir, Vec2D viewport) {
+    return show(window, model, playerPos, playerDir, viewport);
+  }
+
+  /**
+   * Draw a complete frame of a snapshot into the buffer strategy of {@code window} and show it, or
+   * nothing if it would look the same as the last, see the other {@code renderTo}
+   * @param alpha how far time has moved from the snapshot's previous tick towards it, 0 to 1
+   * @return false if the frame was skipped
+   */
+  public boolean renderTo(Window window, GameSnapshot snapshot, double alpha) {
+    return show(window, snapshot, snapshot.playerPos(alpha), snapshot.playerDir(alpha), snapshot.viewport(alpha));
+  }
+
+  private boolean show(Window window, ViewableModel state, Vec2D playerPos, Vec2D playerDir, Vec2D viewport) {
+    var strategy = window.getBufferStrategy();
+    if (!changedSinceShown(state, playerPos, playerDir, viewport) && !strategy.contentsLost()) {
+      return false;
+    }
+
+    var origin = SwingUtilities.convertPoint(this, 0, 0, window);
+    do {
+      do {
+        var g2 = (Graphics2D) strategy.getDrawGraphics();
+        try {
+          g2.translate(origin.x, origin.y);
+          g2.clipRect(0, 0, getWidth(), getHeight());
+          draw(g2, state, playerPos, playerDir, viewport);
+        } finally {
+          g2.dispose();
+        }
+      } while (strategy.contentsRestored());
+
+      strategy.show();
+    } while (strategy.contentsLost());
+
+    Toolkit.getDefaultToolkit().sync();
+    return true;
+  }
+
+  /**
+   * compare what a frame would be drawn from with the frame last shown, and remember it
+   */
+  private boolean changedSinceShown(ViewableModel state, Vec2D playerPos, Vec2D playerDir, Vec2D viewport) {
+    var grid = state.getGrid();
+    long version = state.version();
+    long gridVersion = grid.version();
+    int width = getWidth();
+    int height = getHeight();
+    boolean changed = appearanceChanged
+        || version != shownVersion || grid != shownGrid || gridVersion != shownGridVersion
+        || width != shownWidth || height != shownHeight
+        || !playerPos.equals(shownPos) || !playerDir.equals(shownDir) || !viewport.equals(shownViewport);
+
+    appearanceChanged = false;
+    shownVersion = version;
+    shownGrid = grid;
+    shownGridVersion = gridVersion;
+    shownWidth = width;
+    shownHeight = height;
+    shownPos = playerPos;
+    shownDir = playerDir;
+    shownViewport = viewport;
+    return changed;
+  }
+
+  /**
+   * @param scale fraction of the panel's width and height to cast and draw, the frame is upscaled to fit
+   */
+  private void paintWorld(Graphics2D g2, ViewableModel state, Camera camera, double scale) {
+    int panelWidth = getWidth();
+    int panelHeight = getHeight();
+    if (panelWidth <= 0 || panelHeight <= 0) {
+      return;
+    }
+    int winWidth = Math.max(1, (int) (panelWidth * scale));
+    int winHeight = Math.max(1, (int) (panelHeight * scale));
+    ensureFrame(winWidth, winHeight);
+
+    var grid = state.getGrid();
+    rayCaster.resize(winWidth);
+    if (wallTop.length < winWidth) {
+      wallTop = Arrays.copyOf(wallTop, winWidth);
+      wallBottom = Arrays.copyOf(wallBottom, winWidth);
+    }
+    var blocks = state.getBlockPositions();
+    // blocks are taken off the map once the game is over, none are drawn then
+    int blockCount = state.getGameState() == GameState.ACTIVE ? blocks.size() : 0;
+    if (blockX.length < blockCount) {
+      blockX = Arrays.copyOf(blockX, blockCount);
+      blockY = Arrays.copyOf(blockY, blockCount);
+    }
+    for (int i = 0; i < blockCount; i++) {
+      blockX[i] = blocks.get(i).x() + 0.5;
+      blockY[i] = blocks.get(i).y() + 0.5;
+    }
+    billboards.project(camera, blockX, blockY, blockCount, winWidth, maxRenderDistance);
+
+    // the rendering thread waits here until every strip is done, so the model cannot change meanwhile
+    long steps;
+    if (winWidth >= parallelMinWidth) {
+      var strip = new ColumnStrip(grid, camera, 0, winWidth, winHeight);
+      ForkJoinPool.commonPool().invoke(strip);
+      steps = strip.steps;
+    } else {
+      steps = drawColumns(grid, camera, 0, winWidth, winHeight);
+    }
+    if (Metrics.ENABLED) {
+      Metrics.RAY_STEPS_PER_FRAME.record(steps);
+    }
+
+    if (winWidth == panelWidth && winHeight == panelHeight) {
+      g2.drawImage(frame, 0, 0, null);
+    } else {
+      g2.drawImage(frame, 0, 0, panelWidth, panelHeight, null);
+    }
+  }
+
+  /**
+   * draw sky, floor and walls for columns {@code from} until {@code to}, touching no other pixels
+   * @return number of cells stepped through by the rays
+   */
+  private long drawColumns(ViewableGrid grid, Camera camera, int from, int to, int winHeight) {
+    long steps = 0;
+    int winWidth = pixels.length / winHeight;
+    int horizon = winHeight / 2;
+    if (!textured) {
+      for (int y = 0; y < winHeight; y++) {
+        Arrays.fill(pixels, y * winWidth + from, y * winWidth + to, y < horizon ? SKY_COLOR : FLOOR_COLOR);
       }
     }
+
+    for (int i = from; i < to; i++) {
+      // rays range from direction - viewport to direction + viewport
+      double vpScalar = 2. * i / winWidth - 1;
+      double rayX = camera.dirX() + camera.planeX() * vpScalar;
+      double rayY = camera.dirY() + camera.planeY() * vpScalar;
+      steps += rayCaster.cast(grid, camera.posX(), camera.posY(), rayX, rayY, maxRenderDistance, i);
+
+      int cell = rayCaster.cell(i);
+      if (cell == 0) {
+        // nothing within render distance, sky and floor meet at the horizon
+        wallTop[i] = horizon;
+        wallBottom[i] = horizon - 1;
+        continue;
+      }
+
+      double depth = rayCaster.depth(i);
+      double lineHeight = winHeight / depth;
+      int top = (int) Math.max(0, (winHeight - lineHeight) / 2.);
+      int bottom = (int) Math.min(winHeight - 1, (winHeight + lineHeight) / 2.);
+      wallTop[i] = top;
+      wallBottom[i] = bottom;
+
+      double fog = Math.min(1, (depth / maxRenderDistance - FOG_START) / (1 - FOG_START));
+      boolean sideX = rayCaster.sideX(i);
+      if (textured) {
+        // where along its face the wall was hit, mirrored so textures never show flipped
+        double wallX = sideX ? camera.posY() + depth * rayY : camera.posX() + depth * rayX;
+        int texX = (int) ((wallX - Math.floor(wallX)) * Textures.SIZE);
+        if (sideX ? rayX > 0 : rayY < 0) {
+          texX = Textures.MASK - texX;
+        }
+
+        var texture = sideX ? cellTexturesDark[cell] : cellTextures[cell];
+        drawWallColumn(texture, texX << Textures.SHIFT, i, top, bottom, lineHeight, winWidth, winHeight, fog);
+      } else {
+        int color = sideX ? cellColorsDark[cell] : cellColors[cell];
+        if (fog > 0) {
+          color = blend(color, SKY_COLOR, fog);
+        }
+        for (int p = top * winWidth + i, end = bottom * winWidth + i; p <= end; p += winWidth) {
+          pixels[p] = color;
+        }
+      }
+    }
+
+    if (textured) {
+      drawFloorAndCeiling(camera, from, to, winWidth, winHeight);
+    }
+    drawBillboards(from, to, winWidth, winHeight);
+    return steps;
   }
 
-  private void paintWorld(Graphics2D g2) {
-    int winHeight = getHeight();
-    int winWidth = getWidth();
+  /**
+   * draw the columns {@code from} until {@code to} of every projected sprite, far to near, where no
+   * wall is in front of them
+   */
+  private void drawBillboards(int from, int to, int winWidth, int winHeight) {
+    var texture = blockTexture;
+    for (int k = 0; k < billboards.count(); k++) {
+      double depth = billboards.depth(k);
+      double left = billboards.left(k);
+      double width = billboards.width(k);
+      int first = Math.max(from, (int) Math.ceil(left - 0.5));
+      int last = Math.min(to, (int) Math.ceil(left + width - 0.5));
+      if (first >= last) {
+        continue;
+      }
 
-    Rectangle2D sky = new Rectangle2D.Double(0., 0., winWidth, winHeight / 2.);
-    g2.setColor(new Color(240, 255, 255));
-    g2.fill(sky);
+      double lineHeight = winHeight / depth;
+      int top = (int) Math.max(0, (winHeight - lineHeight) / 2.);
+      int bottom = (int) Math.min(winHeight - 1, (winHeight + lineHeight) / 2.);
+      double fog = Math.min(1, (depth / maxRenderDistance - FOG_START) / (1 - FOG_START));
+      int color = fog > 0 ? blend(blockColor, SKY_COLOR, fog) : blockColor;
+
+      for (int i = first; i < last; i++) {
+        if (depth >= rayCaster.depth(i)) {
+          continue;
+        }
+        if (textured) {
+          int texX = Math.min(Textures.MASK, (int) ((i + 0.5 - left) / width * Textures.SIZE));
+          drawWallColumn(texture, texX << Textures.SHIFT, i, top, bottom, lineHeight, winWidth, winHeight, fog);
+        } else {
+          for (int p = top * winWidth + i, end = bottom * winWidth + i; p <= end; p += winWidth) {
+            pixels[p] = color;
+          }
+        }
+      }
+    }
+  }
 
-    Rectangle2D floor = new Rectangle2D.Double(0., winHeight / 2., winWidth, winHeight / 2.);
-    g2.setColor(new Color(100, 200, 150));
-    g2.fill(floor);
+  /**
+   * copy one column of a wall or sprite texture, stepping through it in fixed point
+   * @param offset index of the texture column's first texel
+   */
+  private void drawWallColumn(int[] texture, int offset, int column, int top, int bottom, double lineHeight,
+                              int winWidth, int winHeight, double fog) {
+    // texels per pixel, and the texel at the top row, which may lie below the texture's top if clipped
+    double scale = Textures.SIZE / lineHeight;
+    int step = (int) (long) (scale * (1 << FRACTION_BITS));
+    int texY = (int) (long) (Math.max(0, top - (winHeight - lineHeight) / 2.) * scale * (1 << FRACTION_BITS));
+
+    int end = bottom * winWidth + column;
+    if (fog > 0) {
+      for (int p = top * winWidth + column; p <= end; p += winWidth) {
+        pixels[p] = blend(texture[offset + (texY >>> FRACTION_BITS & Textures.MASK)], SKY_COLOR, fog);
+        texY += step;
+      }
+    } else {
+      for (int p = top * winWidth + column; p <= end; p += winWidth) {
+        pixels[p] = texture[offset + (texY >>> FRACTION_BITS & Textures.MASK)];
+        texY += step;
+      }
+    }
+  }
+
+  /**
+   * Cast the floor row by row below the walls, and mirror every row onto the ceiling. Each row lies at
+   * a single distance, so its texture coordinates advance by a constant fixed point step per column.
+   */
+  private void drawFloorAndCeiling(Camera camera, int from, int to, int winWidth, int winHeight) {
+    int horizon = winHeight / 2;
+    double scale = Textures.SIZE * (double) (1 << FRACTION_BITS);
+
+    for (int y = horizon; y < winHeight; y++) {
+      int ceilingY = winHeight - 1 - y;
+      // a wall at this distance ends right above the row
+      double distance = winHeight / (2. * (y - horizon) + 1);
+      double fog = Math.min(1, (distance / maxRenderDistance - FOG_START) / (1 - FOG_START));
+      int row = y * winWidth;
+      int ceilingRow = ceilingY * winWidth;
+      if (fog >= 1) {
+        for (int i = from; i < to; i++) {
+          if (y > wallBottom[i]) {
+            pixels[row + i] = SKY_COLOR;
+          }
+          if (ceilingY < wallTop[i]) {
+            pixels[ceilingRow + i] = SKY_COLOR;
+          }
+        }
+        continue;
+      }
+
+      // spot on the floor seen by column from, and how far it moves per column
+      double vpScalar = 2. * from / winWidth - 1;
+      double floorX = camera.posX() + distance * (camera.dirX() + camera.planeX() * vpScalar);
+      double floorY = camera.posY() + distance * (camera.dirY() + camera.planeY() * vpScalar);
+      // only the texel within the texture matters, so the coordinates may wrap around freely
+      int u = (int) (long) (floorX * scale);
+      int v = (int) (long) (floorY * scale);
+      int du = (int) (long) (distance * camera.planeX() * 2 / winWidth * scale);
+      int dv = (int) (long) (distance * camera.planeY() * 2 / winWidth * scale);
+
+      for (int i = from; i < to; i++, u += du, v += dv) {
+        int texel = (v >>> FRACTION_BITS & Textures.MASK) << Textures.SHIFT | u >>> FRACTION_BITS & Textures.MASK;
+        if (y > wallBottom[i]) {
+          int color = floorTexture[texel];
+          pixels[row + i] = fog > 0 ? blend(color, SKY_COLOR, fog) : color;
+        }
+        if (ceilingY < wallTop[i]) {
+          int color = ceilingTexture[texel];
+          pixels[ceilingRow + i] = fog > 0 ? blend(color, SKY_COLOR, fog) : color;
+        }
+      }
+    }
+  }
 
-    var rays = generateRays();
-    for (int i = 0; i < winWidth; i++) {
-      var rayInfo = castRay(rays.get(i));
-      double lineHeight = winHeight / rayInfo.distance();
-      double y1 = (winHeight + lineHeight) / 2.;
-      Line2D line = new Line2D.Double(i, y1, i, y1 - lineHeight);
-      g2.setColor(rayInfo.color());
-      g2.draw(line);
+  /**
+   * @return {@code from} moved towards {@code to} by {@code amount}, 0 to 1, per color channel
+   */
+  private static int blend(int from, int to, double amount) {
+    int weight = (int) (amount * 256);
+    int r = ((from >> 16 & 0xFF) * (256 - weight) + (to >> 16 & 0xFF) * weight) >> 8;
+    int g = ((from >> 8 & 0xFF) * (256 - weight) + (to >> 8 & 0xFF) * weight) >> 8;
+    int b = ((from & 0xFF) * (256 - weight) + (to & 0xFF) * weight) >> 8;
+    return 0xFF << 24 | r << 16 | g << 8 | b;
+  }
+
+  private void ensureFrame(int width, int height) {
+    if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+      frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
     }
   }
 
-  private void paintGameOver(Graphics2D g2) {
+  private void paintGameOver(Graphics2D g2, int score) {
     int width = getWidth();
     int height = getHeight();
 
@@ -90,7 +608,7 @@ public class View extends JPanel {
     drawVertCenteredString(g2, "GAME OVER", width / 2, height / 2);
 
     g2.setFont(new Font("Arial", Font.BOLD, getHeight() / 20));
-    drawVertCenteredString(g2, "YOU STAYED ALIVE FOR " + model.getScore() + " SECONDS", width / 2, (int) (height * 0.75));
+    drawVertCenteredString(g2, "YOU STAYED ALIVE FOR " + score + " SECONDS", width / 2, (int) (height * 0.75));
 
     g2.setFont(new Font("Arial", Font.PLAIN, getHeight() / 25));
     drawVertCenteredString(g2, "Press Enter to play again", width / 2, (int) (height * 0.9));
@@ -101,72 +619,44 @@ public class View extends JPanel {
     g2.drawString(text, x - stringWidth / 2, y);
   }
 
-  private List<Vec2D> generateRays() {
-    int winWidth = getWidth();
-    Vec2D vp = model.getViewport();
-    Vec2D dir = model.getPlayerDir();
-
-    List<Vec2D> rays = new ArrayList<>(winWidth);
-
-    for (int i = 0; i < winWidth; i++) {
-      double vpScalar = 2. * i / winWidth - 1;
-      var ray = Vec2D.add(dir, vp.scale(vpScalar));
-
-      rays.add(ray);
-    }
-
-    return rays;
-  }
-
   /**
-   * DDA algorithm, based on this <a href="https://lodev.org/cgtutor/raycasting.html">article</a>
-   * by Lode Vandevenne
+   * range of columns, split in halves until small enough to be drawn by one worker
    */
-  private RayInfo castRay(Vec2D rayDir) {
-    var playerPos = model.getPlayerPos();
-    var mapPos = new GridVec(playerPos);
-
-    // 1. / 0 == Double.INFINITY which is the desired behaviour
-    double deltaDistX = Math.abs(1. / rayDir.x());
-    double deltaDistY = Math.abs(1. / rayDir.y());
-
-    double totalDistX = rayDir.x() < 0 ? (playerPos.x() - mapPos.x()) * deltaDistX : (mapPos.x() + 1 - playerPos.x()) * deltaDistX;
-    double totalDistY = rayDir.y() < 0 ? (playerPos.y() - mapPos.y()) * deltaDistY : (mapPos.y() + 1 - playerPos.y()) * deltaDistY;
-
-    var stepX = new GridVec(rayDir.x() < 0 ? -1 : 1, 0);
-    var stepY = new GridVec(0, rayDir.y() < 0 ? -1 : 1);
+  private class ColumnStrip extends RecursiveAction {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final ViewableGrid grid;
+    private final Camera camera;
+    private final int from;
+    private final int to;
+    private final int winHeight;
+
+    // cells stepped through by the rays of this strip, set once computed
+    long steps;
+
+    ColumnStrip(ViewableGrid grid, Camera camera, int from, int to, int winHeight) {
+      this.grid = grid;
+      this.camera = camera;
+      this.from = from;
+      this.to = to;
+      this.winHeight = winHeight;
+    }
 
-    boolean wallDirIsX = false; // only initialized for compiler
-    boolean hitWall = false;
-    while (!hitWall) {
-      if (totalDistX < totalDistY) {
-        totalDistX += deltaDistX;
-        mapPos = GridVec.add(mapPos, stepX);
-        wallDirIsX = true;
-      } else {
-        totalDistY += deltaDistY;
-        mapPos = GridVec.add(mapPos, stepY);
-        wallDirIsX = false;
+    @Override
+    protected void compute() {
+      int winWidth = pixels.length / winHeight;
+      int stripWidth = Math.max(MIN_STRIP_WIDTH, winWidth / (ForkJoinPool.getCommonPoolParallelism() * 4));
+      if (to - from <= stripWidth) {
+        steps = drawColumns(grid, camera, from, to, winHeight);
+        return;
       }
 
-      hitWall = model.checkGridCell(mapPos) != 0;
+      int mid = (from + to) >>> 1;
+      var left = new ColumnStrip(grid, camera, from, mid, winHeight);
+      var right = new ColumnStrip(grid, camera, mid, to, winHeight);
+      invokeAll(left, right);
+      steps = left.steps + right.steps;
     }
-
-    double rayLength = wallDirIsX ? totalDistX - deltaDistX : totalDistY - deltaDistY;
-    Color color;
-
-    int cellValue = model.checkGridCell(mapPos);
-    if (cellValue == 2) {
-      color = blockColor;
-    } else {
-      color = cellCodeToColor.get(cellValue);
-    }
-    if (wallDirIsX) {
-      color = color.darker();
-    }
-
-    return new RayInfo(rayLength, color);
   }
-
-  private record RayInfo(double distance, Color color) {}
 }
@@ -0,0 +1,40 @@
+package view;
+
+/**
+ * Read only view of the map, meant for code walking many cells per frame.
+ * <br/>
+ * The outer ring of the grid is always wall, so anything walking cell by cell from a position inside
+ * the map will hit a wall before leaving it, and needs no bounds checking of its own.
+ */
+public interface ViewableGrid {
+  /**
+   * @return number of columns, the extent along x
+   */
+  int cols();
+
+  /**
+   * @return number of rows, the extent along y
+   */
+  int rows();
+
+  /**
+   * Unchecked read of a cell, 0 is empty and anything else is a wall stopping a ray. Blocks are not
+   * part of the grid, they are drawn as entities
+   * @param x must be in range 0 to {@code cols() - 1}
+   * @param y must be in range 0 to {@code rows() - 1}
+   */
+  int cell(int x, int y);
+
+  /**
+   * Lets rays cross open space in one jump instead of cell by cell
+   * @return log2 of the side of the largest aligned square holding the cell in which every cell is
+   * empty, 0 if there is none bigger than the cell. Same range as {@code cell}
+   */
+  int emptyShift(int x, int y);
+
+  /**
+   * @return number of changes made to the walls so far, cells read earlier are still valid as long as
+   * this has not moved on
+   */
+  long version();
+}
@@ -4,12 +4,24 @@ import model.GameState;
 import model.vector.GridVec;
 import model.vector.Vec2D;
 
+import java.util.List;
+
 public interface ViewableModel {
   /**
    * get value stored at given index
    */
   int checkGridCell(GridVec pos) throws IndexOutOfBoundsException;
 
+  /**
+   * @return read only view of the current map, for bulk access without per cell checks
+   */
+  ViewableGrid getGrid();
+
+  /**
+   * @return cells of all blocks, drawn as billboards standing in their centers
+   */
+  List<GridVec> getBlockPositions();
+
   /**
    * @return current position of player
    */
@@ -28,6 +40,13 @@ public interface ViewableModel {
    */
   Vec2D getViewport();
 
+  /**
+   * Number of changes made so far to the player, the blocks, the game state or the score. A frame
+   * drawn at an earlier version with the same camera still shows the game as it is, as long as
+   * {@code getGrid()} and its {@code version()} are also unchanged
+   */
+  long version();
+
   /**
    * get the current game state
    */
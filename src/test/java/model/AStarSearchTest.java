@@ -0,0 +1,93 @@
+package model;
+
+import model.vector.GridVec;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@code AStarSearch} has to break ties exactly like the object based A* it replaced, so blocks keep
+ * taking the same steps on every map.
+ */
+class AStarSearchTest {
+  private static final int MAP_SIZE = 60;
+
+  @Test
+  void firstStepsMatchObjectBasedSearch() {
+    var search = new AStarSearch(MAP_SIZE * MAP_SIZE, AStarSearch.Heuristic.EUCLIDEAN);
+
+    for (long seed = 0; seed < 20; seed++) {
+      var rand = new Random(seed);
+      var center = new GridVec(MAP_SIZE / 2, MAP_SIZE / 2);
+      var map = new GridMap(MAP_SIZE, List.of(), center, new Random(seed));
+
+      for (int q = 0; q < 100; q++) {
+        var from = randomCell(map, rand);
+        var to = randomCell(map, rand);
+        int step = search.firstStep(map, index(from), index(to));
+
+        var expected = objectBasedFirstStep(map, from, to);
+        assertEquals(expected == null ? -1 : index(expected), step,
+            "map seed " + seed + " from " + from + " to " + to);
+      }
+    }
+  }
+
+  /**
+   * the original search, open set of records in a {@code PriorityQueue} and a set of visited cells
+   */
+  private static GridVec objectBasedFirstStep(GridMap map, GridVec from, GridVec to) {
+    var queue = new PriorityQueue<QueueElem>();
+    queue.add(new QueueElem(from, null, 0, from.distance(to)));
+    var visited = new HashSet<GridVec>();
+
+    while (!queue.isEmpty()) {
+      var current = queue.poll();
+      if (!visited.add(current.pos)) {
+        continue;
+      }
+
+      if (current.pos.equals(to)) {
+        var step = current;
+        while (step.prev != null && step.prev.prev != null) {
+          step = step.prev;
+        }
+        return step.pos;
+      }
+
+      for (var dir : List.of(new GridVec(0, 1), new GridVec(0, -1), new GridVec(1, 0), new GridVec(-1, 0))) {
+        var next = GridVec.add(current.pos, dir);
+        if (map.validPos(next) && !map.isWall(index(next))) {
+          queue.add(new QueueElem(next, current, current.steps + 1, next.distance(to)));
+        }
+      }
+    }
+    return null;
+  }
+
+  private static GridVec randomCell(GridMap map, Random rand) {
+    while (true) {
+      var pos = new GridVec(rand.nextInt(MAP_SIZE), rand.nextInt(MAP_SIZE));
+      if (!map.isWall(index(pos))) {
+        return pos;
+      }
+    }
+  }
+
+  private static int index(GridVec pos) {
+    return pos.y() * MAP_SIZE + pos.x();
+  }
+
+  private record QueueElem(GridVec pos, QueueElem prev, int steps, double heuristic)
+      implements Comparable<QueueElem> {
+    @Override
+    public int compareTo(QueueElem o) {
+      return Double.compare(steps + heuristic, o.steps + o.heuristic);
+    }
+  }
+}
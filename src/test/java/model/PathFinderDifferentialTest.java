@@ -0,0 +1,175 @@
+package model;
+
+import model.vector.GridVec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every path mode against a BFS distance field on seeded maps. All modes have to agree with the field
+ * on whether the target is reachable. The exact searches and the flow field have to step one cell
+ * closer to the target, steps themselves may differ where several paths are equally short. HPA*
+ * refines a path over sector entrances and is only near optimal, following its steps has to reach
+ * the target with a bounded detour.
+ */
+class PathFinderDifferentialTest {
+  private static final int MAP_SIZE = 100;
+  private static final int MAPS = 10;
+  private static final int QUERIES = 100;
+  // every HPA* path is followed to its end, step by step
+  private static final int HIERARCHICAL_QUERIES = 40;
+  // detour allowed on a single HPA* path, a few sectors
+  private static final int MAX_DETOUR = 3 * SectorGraph.SECTOR_SIZE;
+  // HPA* paths may add this much to the length of all shortest paths together
+  private static final double MAX_TOTAL_STRETCH = 1.05;
+
+  @Test
+  void searchesStepAlongShortestPaths() {
+    var modes = Arrays.stream(PathMode.values()).filter(PathMode::searchesPerQuery).toList();
+    var finders = modes.stream().map(mode -> mode.newFinder(MAP_SIZE * MAP_SIZE)).toList();
+
+    for (int m = 0; m < MAPS; m++) {
+      var rand = new Random(m);
+      var map = newMap(m);
+
+      for (int q = 0; q < QUERIES; q++) {
+        int from = randomCell(map, rand);
+        int to = randomCell(map, rand);
+        var distances = distances(map, to);
+        for (int f = 0; f < finders.size(); f++) {
+          int step = finders.get(f).firstStep(map, from, to);
+          assertStepCloser(map, distances, from, step,
+              modes.get(f) + " on map seed " + m + " from " + from + " to " + to);
+        }
+      }
+    }
+  }
+
+  @Test
+  void flowFieldStepsAlongShortestPaths() {
+    for (int m = 0; m < MAPS; m++) {
+      var rand = new Random(m);
+      var map = newMap(m);
+      var field = new FlowField(map);
+
+      for (int q = 0; q < QUERIES; q++) {
+        int from = randomCell(map, rand);
+        int to = randomCell(map, rand);
+        field.setTarget(to);
+        assertStepCloser(map, distances(map, to), from, field.firstStep(from),
+            "map seed " + m + " from " + from + " to " + to);
+      }
+    }
+  }
+
+  @Test
+  void hierarchicalPathsStayNearShortest() {
+    long shortest = 0;
+    long taken = 0;
+
+    for (int m = 0; m < MAPS; m++) {
+      var rand = new Random(m);
+      var map = newMap(m);
+      var search = new HierarchicalSearch(new SectorGraph(map));
+
+      for (int q = 0; q < HIERARCHICAL_QUERIES; q++) {
+        int from = randomCell(map, rand);
+        int to = randomCell(map, rand);
+        String query = "map seed " + m + " from " + from + " to " + to;
+        int distance = distances(map, to)[from];
+
+        if (distance < 0) {
+          assertEquals(-1, search.firstStep(from, to), query + " found a path to an unreachable target");
+          continue;
+        }
+
+        // follow the steps until the target is reached, or the detour grows too long
+        int current = from;
+        int steps = 0;
+        while (current != to) {
+          int next = search.firstStep(current, to);
+          assertTrue(next >= 0 && adjacent(map, current, next), query + " stepped from " + current + " to " + next);
+          current = next;
+          assertTrue(++steps <= distance + MAX_DETOUR,
+              query + " took more than " + MAX_DETOUR + " steps over the distance " + distance);
+        }
+        shortest += distance;
+        taken += steps;
+      }
+    }
+
+    assertTrue(taken <= shortest * MAX_TOTAL_STRETCH,
+        "HPA* paths took " + taken + " steps, shortest paths " + shortest);
+  }
+
+  /**
+   * {@code step} has to be a neighbour one cell closer to the target, {@code from} itself if already
+   * there and -1 if the target can't be reached
+   * @param distances BFS distance of every cell to the target
+   */
+  private static void assertStepCloser(GridMap map, int[] distances, int from, int step, String query) {
+    int distance = distances[from];
+    if (distance < 0) {
+      assertEquals(-1, step, query + " found a path to an unreachable target");
+    } else if (distance == 0) {
+      assertEquals(from, step, query);
+    } else {
+      assertTrue(step >= 0 && adjacent(map, from, step) && distances[step] == distance - 1,
+          query + " at distance " + distance + " stepped to " + step);
+    }
+  }
+
+  /**
+   * plain breadth first search over the whole map
+   * @return steps from every cell to {@code target}, -1 where it can't be reached
+   */
+  private static int[] distances(GridMap map, int target) {
+    int cols = map.cols();
+    var dist = new int[map.rows() * cols];
+    Arrays.fill(dist, -1);
+    var queue = new int[dist.length];
+    int head = 0;
+    int tail = 0;
+    dist[target] = 0;
+    queue[tail++] = target;
+
+    while (head < tail) {
+      int current = queue[head++];
+      int x = current % cols;
+      int y = current / cols;
+      for (int d = 0; d < 4; d++) {
+        int nx = x + (d == 2 ? 1 : d == 3 ? -1 : 0);
+        int ny = y + (d == 0 ? 1 : d == 1 ? -1 : 0);
+        int next = ny * cols + nx;
+        if (nx >= 0 && nx < cols && ny >= 0 && ny < map.rows() && dist[next] < 0 && !map.isWall(next)) {
+          dist[next] = dist[current] + 1;
+          queue[tail++] = next;
+        }
+      }
+    }
+    return dist;
+  }
+
+  private static GridMap newMap(long seed) {
+    var center = new GridVec(MAP_SIZE / 2, MAP_SIZE / 2);
+    return new GridMap(MAP_SIZE, List.of(), center, new Random(seed));
+  }
+
+  private static int randomCell(GridMap map, Random rand) {
+    while (true) {
+      int i = rand.nextInt(map.rows() * map.cols());
+      if (!map.isWall(i)) {
+        return i;
+      }
+    }
+  }
+
+  private static boolean adjacent(GridMap map, int a, int b) {
+    int cols = map.cols();
+    return !map.isWall(b) && Math.abs(a % cols - b % cols) + Math.abs(a / cols - b / cols) == 1;
+  }
+}
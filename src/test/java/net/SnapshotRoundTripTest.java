@@ -0,0 +1,264 @@
+package net;
+
+import controller.GameEngine;
+import controller.TickClock;
+import model.GameState;
+import model.Model;
+import model.PathMode;
+import model.vector.GridVec;
+import model.vector.Vec2D;
+import org.junit.jupiter.api.Test;
+import replay.GameSetup;
+import view.ViewableGrid;
+import view.ViewableModel;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trip of the snapshot format on seeded games played with random input. A
+ * {@code SnapshotEncoder} writes the game into a buffer and a {@code RemoteModel} applies what it
+ * wrote, after which both have to show the same state, down to the fixed point camera and every cell.
+ * <br/>
+ * Snapshots are skipped at random so deltas span several ticks, games are restarted once lost, and
+ * walls are toggled in bursts from a few cells to most of the map, which also exercises keyframes
+ * sent in place of large deltas. Now and then a snapshot is first offered a buffer too small for it,
+ * which has to be refused without writing anything.
+ */
+class SnapshotRoundTripTest {
+  private static final int MAP_SIZE = 40;
+  private static final int GAMES = 15;
+  private static final int TICKS = 1500;
+
+  @Test
+  void remoteModelShowsWhatWasEncoded() {
+    var out = ByteBuffer.allocate(1 << 16);
+    long keyframes = 0;
+
+    for (int g = 0; g < GAMES; g++) {
+      var rand = new Random(g);
+      var clock = new TickClock();
+      var model = new GameSetup(g, MAP_SIZE, 1 + g % 5, PathMode.FLOW_FIELD).newModel(clock);
+      var engine = new GameEngine(model, clock);
+      var edited = new EditedModel(model);
+      var encoder = new SnapshotEncoder(edited);
+      var remote = new RemoteModel();
+      int input = 0;
+
+      for (int t = 0; t < TICKS; t++) {
+        String where = "game " + g + " tick " + t;
+        if (rand.nextInt(20) == 0) {
+          input = rand.nextInt(64);
+        }
+        if (model.getGameState() == GameState.GAME_OVER && rand.nextInt(30) == 0) {
+          engine.startNewGame();
+          edited.clearEdits();
+          encoder.requestKeyframe();
+        }
+        engine.tick(input);
+        if (rand.nextInt(200) == 0) {
+          edited.toggleWalls(rand, 1 + rand.nextInt(rand.nextBoolean() ? 3 : MAP_SIZE * MAP_SIZE / 2));
+        }
+        if (rand.nextInt(4) == 0) {
+          // skipped, the next delta carries this tick's changes too
+          continue;
+        }
+
+        if (rand.nextInt(50) == 0) {
+          var full = ByteBuffer.allocate(rand.nextInt(8));
+          if (!encoder.write(full)) {
+            assertEquals(0, full.position(), where + ": refused snapshot left bytes behind");
+          }
+        }
+
+        out.clear();
+        assertTrue(encoder.write(out), where + ": snapshot did not fit into " + out.capacity() + " bytes");
+        out.flip();
+        while (out.hasRemaining()) {
+          int length = out.getInt();
+          if (out.get(out.position()) == SnapshotFormat.KEYFRAME) {
+            keyframes++;
+          }
+          remote.apply(out.slice(out.position(), length));
+          out.position(out.position() + length);
+        }
+
+        assertNull(compare(edited, remote), where);
+      }
+    }
+
+    // a keyframe per game at least, plus those sent in place of large deltas
+    assertTrue(keyframes > GAMES, keyframes + " keyframes");
+  }
+
+  /**
+   * @return what differs, null if nothing does
+   */
+  private static String compare(ViewableModel sent, RemoteModel received) {
+    if (!received.ready()) {
+      return "no keyframe applied";
+    }
+    if (sent.getGameState() != received.getGameState() || sent.getScore() != received.getScore()) {
+      return "state " + sent.getGameState() + " " + sent.getScore() + " received as "
+          + received.getGameState() + " " + received.getScore();
+    }
+    if (sent.timeSinceStart() != received.timeSinceStart()) {
+      return "time " + sent.timeSinceStart() + " received as " + received.timeSinceStart();
+    }
+    if (!sent.getBlockPositions().equals(received.getBlockPositions())) {
+      return "blocks " + sent.getBlockPositions() + " received as " + received.getBlockPositions();
+    }
+    if (!sameFixed(sent.getPlayerPos(), received.getPlayerPos())
+        || !sameFixed(sent.getPlayerDir(), received.getPlayerDir())
+        || !sameFixed(sent.getViewport(), received.getViewport())) {
+      return "camera " + sent.getPlayerPos() + " " + sent.getPlayerDir() + " received as "
+          + received.getPlayerPos() + " " + received.getPlayerDir();
+    }
+
+    var grid = sent.getGrid();
+    var receivedGrid = received.getGrid();
+    if (grid.cols() != receivedGrid.cols() || grid.rows() != receivedGrid.rows()) {
+      return "size " + grid.cols() + "x" + grid.rows() + " received as " + receivedGrid.cols() + "x"
+          + receivedGrid.rows();
+    }
+    for (int y = 0; y < grid.rows(); y++) {
+      for (int x = 0; x < grid.cols(); x++) {
+        var pos = new GridVec(x, y);
+        if (grid.cell(x, y) != receivedGrid.cell(x, y)
+            || sent.checkGridCell(pos) != received.checkGridCell(pos)) {
+          return "cell " + pos + " " + sent.checkGridCell(pos) + " received as " + received.checkGridCell(pos);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean sameFixed(Vec2D a, Vec2D b) {
+    return SnapshotFormat.fixed(a.x()) == SnapshotFormat.fixed(b.x())
+        && SnapshotFormat.fixed(a.y()) == SnapshotFormat.fixed(b.y());
+  }
+
+  /**
+   * A model seen with some of its walls toggled, the way map edits change walls between snapshots
+   */
+  private static final class EditedModel implements ViewableModel {
+    private final Model model;
+    private final EditedGrid grid = new EditedGrid();
+    private long[] toggled = new long[0];
+    private long edits;
+
+    EditedModel(Model model) {
+      this.model = model;
+    }
+
+    void clearEdits() {
+      toggled = new long[0];
+      edits++;
+    }
+
+    /**
+     * toggle given number of random cells, leaving blocks, the player and the outer ring alone
+     */
+    void toggleWalls(Random rand, int count) {
+      var map = model.getGrid();
+      if (toggled.length == 0) {
+        toggled = new long[SnapshotFormat.wallWords(map.cols(), map.rows())];
+      }
+      var player = new GridVec((int) model.getPlayerPos().x(), (int) model.getPlayerPos().y());
+      for (int k = 0; k < count; k++) {
+        var pos = new GridVec(1 + rand.nextInt(map.cols() - 2), 1 + rand.nextInt(map.rows() - 2));
+        if (model.checkGridCell(pos) != 2 && !pos.equals(player)) {
+          int i = pos.y() * map.cols() + pos.x();
+          toggled[i >>> 6] ^= 1L << i;
+        }
+      }
+      edits++;
+    }
+
+    @Override
+    public int checkGridCell(GridVec pos) throws IndexOutOfBoundsException {
+      int cell = model.checkGridCell(pos);
+      return cell == 2 ? cell : grid.cell(pos.x(), pos.y());
+    }
+
+    @Override
+    public ViewableGrid getGrid() {
+      return grid;
+    }
+
+    @Override
+    public List<GridVec> getBlockPositions() {
+      return model.getBlockPositions();
+    }
+
+    @Override
+    public Vec2D getPlayerPos() {
+      return model.getPlayerPos();
+    }
+
+    @Override
+    public Vec2D getPlayerDir() {
+      return model.getPlayerDir();
+    }
+
+    @Override
+    public Vec2D getViewport() {
+      return model.getViewport();
+    }
+
+    @Override
+    public long version() {
+      return model.version() + edits;
+    }
+
+    @Override
+    public GameState getGameState() {
+      return model.getGameState();
+    }
+
+    @Override
+    public long timeSinceStart() {
+      return model.timeSinceStart();
+    }
+
+    @Override
+    public int getScore() {
+      return model.getScore();
+    }
+
+    private final class EditedGrid implements ViewableGrid {
+      @Override
+      public int cols() {
+        return model.getGrid().cols();
+      }
+
+      @Override
+      public int rows() {
+        return model.getGrid().rows();
+      }
+
+      @Override
+      public int cell(int x, int y) {
+        int cell = model.getGrid().cell(x, y);
+        int i = y * cols() + x;
+        return toggled.length == 0 || (toggled[i >>> 6] & 1L << i) == 0 ? cell : cell ^ 1;
+      }
+
+      /**
+       * edits can fill any square
+       */
+      @Override
+      public int emptyShift(int x, int y) {
+        return 0;
+      }
+
+      @Override
+      public long version() {
+        return model.getGrid().version() + edits;
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package replay;
+
+import controller.GameEngine;
+import controller.TickClock;
+import model.GameState;
+import model.PathMode;
+import model.vector.GridVec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Seeking a recorded replay to any tick has to land exactly where playing it from the start gets to,
+ * across new games and on both sides of every keyframe.
+ */
+class ReplayReaderTest {
+  private static final int TICKS = 4 * ReplayFormat.KEYFRAME_INTERVAL + 123;
+  private static final int SEEKS = 300;
+
+  // what was recorded for every tick
+  private final List<List<GridVec>> blocks = new ArrayList<>();
+  private final List<Integer> inputs = new ArrayList<>();
+  private final List<Integer> games = new ArrayList<>();
+
+  @Test
+  void seekLandsWhereReadingFromTheStartDoes(@TempDir Path dir) throws IOException {
+    var file = dir.resolve("game.replay");
+    record(file, new GameSetup(5, 20, 3, PathMode.FLOW_FIELD), new Random(5));
+    var reader = ReplayReader.open(file);
+    assertEquals(TICKS, reader.ticks());
+    assertTrue(games.get(TICKS - 1) > 0, "no new game was recorded");
+
+    var rand = new Random(5);
+    for (int s = 0; s < SEEKS; s++) {
+      long tick = rand.nextInt(TICKS);
+      assertTickAfterSeek(reader, tick);
+    }
+    for (long keyframe = 0; keyframe < TICKS; keyframe += ReplayFormat.KEYFRAME_INTERVAL) {
+      for (long tick = Math.max(0, keyframe - 1); tick <= keyframe + 1; tick++) {
+        assertTickAfterSeek(reader, tick);
+      }
+    }
+
+    reader.seek(reader.ticks());
+    assertFalse(reader.hasNext());
+    assertEquals(-1, Replay.resimulate(reader));
+  }
+
+  /**
+   * seek right before {@code tick}, then play it
+   */
+  private void assertTickAfterSeek(ReplayReader reader, long tick) {
+    reader.seek(tick);
+    reader.next();
+    int t = (int) tick;
+    assertEquals(tick + 1, reader.tick(), "seek to " + tick);
+    assertEquals(inputs.get(t), reader.input(), "input of tick " + tick);
+    assertEquals(games.get(t), reader.game(), "game of tick " + tick);
+    assertEquals(blocks.get(t), reader.blockPositions(), "blocks after tick " + tick);
+  }
+
+  /**
+   * play {@code TICKS} ticks with random input, starting a new game whenever one is lost
+   */
+  private void record(Path file, GameSetup setup, Random rand) throws IOException {
+    var clock = new TickClock();
+    var model = setup.newModel(clock);
+    var engine = new GameEngine(model, clock);
+    int input = 0;
+    int game = 0;
+
+    try (var writer = new ReplayWriter(file, model, setup)) {
+      engine.setTickListener(writer);
+      while (inputs.size() < TICKS) {
+        if (model.getGameState() == GameState.GAME_OVER) {
+          engine.startNewGame();
+          game++;
+        }
+        if (rand.nextInt(20) == 0) {
+          input = rand.nextInt(64);
+        }
+
+        engine.tick(input);
+        inputs.add(input);
+        games.add(game);
+        blocks.add(model.getBlockPositions());
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package view;
+
+import model.MapFile;
+import model.Model;
+import model.PathMode;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The {@code RayCaster}, which jumps over empty squares, against a plain DDA walking every cell. Both
+ * have to hit the same cell on the same side, or both miss, on seeded 999x999 maps from the generated
+ * wall rate down to an empty map. Depths may differ by rounding, jumps add up distances in fewer
+ * steps. Every 50th ray is axis parallel, every other ray has a render distance.
+ */
+class RayCasterTest {
+  private static final int MAP_SIZE = 999;
+  private static final int RAYS = 20_000;
+  private static final long SEED = 7;
+  // relative difference allowed between depths
+  private static final double DEPTH_TOLERANCE = 1e-9;
+
+  // hit of the latest reference ray
+  private double refDepth;
+  private int refCell;
+  private boolean refSideX;
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0.3, 0.02, 0.002, 0})
+  void jumpsHitWhatWalkingHits(double wallRate, @TempDir Path dir) throws IOException {
+    var file = dir.resolve("differential.map");
+    MapFile.generate(file, MAP_SIZE, SEED, wallRate);
+    var model = new Model(MapFile.open(file), PathMode.FLOW_FIELD, 1, SEED, System::currentTimeMillis);
+    var grid = model.getGrid();
+    var rand = new Random(SEED);
+    var caster = new RayCaster();
+    caster.resize(1);
+
+    for (int r = 0; r < RAYS; r++) {
+      double posX = 1 + rand.nextDouble() * (MAP_SIZE - 2);
+      double posY = 1 + rand.nextDouble() * (MAP_SIZE - 2);
+      double angle = rand.nextDouble() * 2 * Math.PI;
+      double maxDistance = r % 2 == 0 ? Double.POSITIVE_INFINITY : rand.nextDouble() * 64;
+      if (grid.cell((int) posX, (int) posY) != 0) {
+        continue;
+      }
+      double rayX = Math.cos(angle);
+      double rayY = Math.sin(angle);
+      if (r % 50 == 0) {
+        rayX = r % 100 == 0 ? 0 : -1;
+        rayY = r % 100 == 0 ? 1 : 0;
+      }
+
+      walk(grid, posX, posY, rayX, rayY, maxDistance);
+      caster.cast(grid, posX, posY, rayX, rayY, maxDistance, 0);
+
+      String ray = "from " + posX + "," + posY + " along " + rayX + "," + rayY + " up to " + maxDistance;
+      assertEquals(refCell, caster.cell(0), ray);
+      if (refCell == 0) {
+        assertEquals(Double.POSITIVE_INFINITY, caster.depth(0), ray);
+      } else {
+        assertEquals(refSideX, caster.sideX(0), ray);
+        assertEquals(refDepth, caster.depth(0), DEPTH_TOLERANCE * refDepth, ray);
+      }
+    }
+  }
+
+  /**
+   * plain DDA, one cell per step
+   */
+  private void walk(ViewableGrid grid, double posX, double posY, double rayX, double rayY,
+                           double maxDistance) {
+    int mapX = (int) posX;
+    int mapY = (int) posY;
+    double deltaDistX = Math.abs(1. / rayX);
+    double deltaDistY = Math.abs(1. / rayY);
+    int stepX = rayX < 0 ? -1 : 1;
+    int stepY = rayY < 0 ? -1 : 1;
+    double totalDistX = (rayX < 0 ? posX - mapX : mapX + 1 - posX) * deltaDistX;
+    double totalDistY = (rayY < 0 ? posY - mapY : mapY + 1 - posY) * deltaDistY;
+
+    while (true) {
+      if (totalDistX < totalDistY) {
+        totalDistX += deltaDistX;
+        mapX += stepX;
+        refSideX = true;
+      } else {
+        totalDistY += deltaDistY;
+        mapY += stepY;
+        refSideX = false;
+      }
+
+      refDepth = refSideX ? totalDistX - deltaDistX : totalDistY - deltaDistY;
+      if (refDepth > maxDistance) {
+        refDepth = Double.POSITIVE_INFINITY;
+        refCell = 0;
+        return;
+      }
+      refCell = grid.cell(mapX, mapY);
+      if (refCell != 0) {
+        return;
+      }
+    }
+  }
+}